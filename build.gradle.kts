@@ -16,6 +16,8 @@ plugins {
     id("io.github.gradle-nexus.publish-plugin").version("1.1.0")
     // https://github.com/PaperMC/paperweight
     id("io.papermc.paperweight.userdev").version("1.3.8")
+    // https://github.com/melix/jmh-gradle-plugin
+    id("me.champeau.jmh").version("0.6.8")
 }
 group = "dev.ckateptb.minecraft"
 version = "1.4.1-SNAPSHOT"
@@ -40,6 +42,9 @@ dependencies {
 
     compileOnly("org.projectlombok:lombok:1.18.28")
     annotationProcessor("org.projectlombok:lombok:1.18.28")
+
+    jmh("io.papermc.paper:paper-api:1.19.2-R0.1-SNAPSHOT")
+    jmh("io.projectreactor:reactor-core:3.4.24")
 }
 
 tasks {
@@ -90,6 +95,15 @@ tasks {
     }
 }
 
+jmh {
+    jmhVersion.set("1.36")
+    // Report allocation rate (gc.alloc.rate.norm) next to the score, so hot path regressions are visible
+    profilers.add("gc")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+}
+
 java {
     toolchain {
         languageVersion.set(JavaLanguageVersion.of(17))
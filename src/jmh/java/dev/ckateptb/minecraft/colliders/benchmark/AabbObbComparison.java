@@ -0,0 +1,130 @@
+package dev.ckateptb.minecraft.colliders.benchmark;
+
+import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.geometry.OrientedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.LerpUtil;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.World;
+import org.bukkit.util.EulerAngle;
+
+import java.util.SplittableRandom;
+
+/**
+ * Randomized check of the AABB vs OBB test against the test it replaced, not a JMH benchmark.
+ * <p>
+ * The reference is the 15 axis test the replaced code was built on, with vectors and the real half extents
+ * of the AABB, so it shares no code with the rotation matrix kernel of {@link OrientedBoundingBoxCollider}.
+ * The replaced test used the max corner of the AABB as half extents and then only checked whether the point
+ * of the OBB closest to the AABB center is inside the AABB, so it missed real overlaps.
+ * Arguments are the number of pairs and the seed, the process exits with 1 if the current test disagrees
+ * with the reference.
+ * <pre>
+ * ./gradlew jmhJar
+ * java -cp build/libs/Colliders-1.4.1-SNAPSHOT-jmh.jar dev.ckateptb.minecraft.colliders.benchmark.AabbObbComparison 500000 42
+ * </pre>
+ */
+public class AabbObbComparison {
+    public static void main(String[] args) {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 42);
+        World world = BenchmarkShape.world("comparison");
+        int overlaps = 0;
+        int mismatches = 0;
+        int replacedMisses = 0;
+        int replacedFalsePositives = 0;
+        for (int i = 0; i < pairs; i++) {
+            ImmutableVector aabbCenter = vector(random, 4);
+            ImmutableVector aabbExtents = extents(random);
+            ImmutableVector min = aabbCenter.subtract(aabbExtents);
+            ImmutableVector max = aabbCenter.add(aabbExtents);
+            OrientedBoundingBoxCollider obb = Colliders.obb(world, vector(random, 4), extents(random),
+                    new EulerAngle(random.nextDouble(-Math.PI, Math.PI), random.nextDouble(-Math.PI, Math.PI), 0));
+            boolean reference = separatingAxes(obb, aabbCenter.getX(), aabbCenter.getY(), aabbCenter.getZ(), aabbExtents);
+            boolean current = obb.intersects(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+            boolean replaced = replaced(obb, min, max);
+            if (reference) overlaps++;
+            if (current != reference) mismatches++;
+            if (reference && !replaced) replacedMisses++;
+            if (!reference && replaced) replacedFalsePositives++;
+        }
+        System.out.printf("pairs=%d overlaps=%d%n", pairs, overlaps);
+        System.out.printf("current: mismatches=%d%n", mismatches);
+        System.out.printf("replaced: missed overlaps=%d, false positives=%d%n", replacedMisses, replacedFalsePositives);
+        if (mismatches > 0) System.exit(1);
+    }
+
+    private static ImmutableVector vector(SplittableRandom random, double bound) {
+        return new ImmutableVector(random.nextDouble(-bound, bound), random.nextDouble(-bound, bound), random.nextDouble(-bound, bound));
+    }
+
+    private static ImmutableVector extents(SplittableRandom random) {
+        return new ImmutableVector(random.nextDouble(0.1, 2), random.nextDouble(0.1, 2), random.nextDouble(0.1, 2));
+    }
+
+    // Copy of the replaced OrientedBoundingBoxCollider#intersects(Collider) branch for AABBs
+    private static boolean replaced(OrientedBoundingBoxCollider obb, ImmutableVector min, ImmutableVector max) {
+        double centerX = (min.getX() + max.getX()) * 0.5;
+        double centerY = (min.getY() + max.getY()) * 0.5;
+        double centerZ = (min.getZ() + max.getZ()) * 0.5;
+        if (!separatingAxes(obb, centerX, centerY, centerZ, max)) return false;
+        ImmutableVector center = obb.getCenter();
+        ImmutableVector halfExtents = obb.getHalfExtents();
+        double dx = centerX - center.getX();
+        double dy = centerY - center.getY();
+        double dz = centerZ - center.getZ();
+        double distRight = clampedProjection(obb.getRight(), halfExtents.getX(), dx, dy, dz);
+        double distUp = clampedProjection(obb.getUp(), halfExtents.getY(), dx, dy, dz);
+        double distForward = clampedProjection(obb.getForward(), halfExtents.getZ(), dx, dy, dz);
+        ImmutableVector right = obb.getRight();
+        ImmutableVector up = obb.getUp();
+        ImmutableVector forward = obb.getForward();
+        return VectorMath.isInAABB(
+                center.getX() + right.getX() * distRight + up.getX() * distUp + forward.getX() * distForward,
+                center.getY() + right.getY() * distRight + up.getY() * distUp + forward.getY() * distForward,
+                center.getZ() + right.getZ() * distRight + up.getZ() * distUp + forward.getZ() * distForward,
+                min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+    }
+
+    // Replaced 15 axis test of the OBB against the world axes box with the given center and half extents,
+    // the replaced code passed the max corner of the AABB as half extents
+    private static boolean separatingAxes(OrientedBoundingBoxCollider obb, double centerX, double centerY, double centerZ,
+                                          ImmutableVector halfExtents) {
+        ImmutableVector[] axes = {obb.getRight(), obb.getUp(), obb.getForward()};
+        ImmutableVector[] worldAxes = {ImmutableVector.PLUS_I, ImmutableVector.PLUS_J, ImmutableVector.PLUS_K};
+        double tx = centerX - obb.getCenter().getX();
+        double ty = centerY - obb.getCenter().getY();
+        double tz = centerZ - obb.getCenter().getZ();
+        for (int i = 0; i < 3; i++) {
+            if (isSeparatingAxis(obb, axes[i].getX(), axes[i].getY(), axes[i].getZ(), tx, ty, tz, worldAxes, halfExtents)) return false;
+            if (isSeparatingAxis(obb, worldAxes[i].getX(), worldAxes[i].getY(), worldAxes[i].getZ(), tx, ty, tz, worldAxes, halfExtents)) return false;
+        }
+        for (ImmutableVector axis : axes) {
+            for (ImmutableVector worldAxis : worldAxes) {
+                double x = VectorMath.crossX(axis.getY(), axis.getZ(), worldAxis.getY(), worldAxis.getZ());
+                double y = VectorMath.crossY(axis.getX(), axis.getZ(), worldAxis.getX(), worldAxis.getZ());
+                double z = VectorMath.crossZ(axis.getX(), axis.getY(), worldAxis.getX(), worldAxis.getY());
+                if (isSeparatingAxis(obb, x, y, z, tx, ty, tz, worldAxes, halfExtents)) return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSeparatingAxis(OrientedBoundingBoxCollider obb, double axisX, double axisY, double axisZ,
+                                            double tx, double ty, double tz, ImmutableVector[] axes, ImmutableVector halfExtents) {
+        return FastMath.abs(VectorMath.dot(tx, ty, tz, axisX, axisY, axisZ)) >
+                projectionRadius(axisX, axisY, axisZ, new ImmutableVector[]{obb.getRight(), obb.getUp(), obb.getForward()}, obb.getHalfExtents())
+                        + projectionRadius(axisX, axisY, axisZ, axes, halfExtents);
+    }
+
+    private static double projectionRadius(double axisX, double axisY, double axisZ, ImmutableVector[] axes, ImmutableVector halfExtents) {
+        return FastMath.abs(halfExtents.getX() * VectorMath.dot(axes[0].getX(), axes[0].getY(), axes[0].getZ(), axisX, axisY, axisZ))
+                + FastMath.abs(halfExtents.getY() * VectorMath.dot(axes[1].getX(), axes[1].getY(), axes[1].getZ(), axisX, axisY, axisZ))
+                + FastMath.abs(halfExtents.getZ() * VectorMath.dot(axes[2].getX(), axes[2].getY(), axes[2].getZ(), axisX, axisY, axisZ));
+    }
+
+    private static double clampedProjection(ImmutableVector axis, double halfExtent, double dx, double dy, double dz) {
+        return LerpUtil.clamp(VectorMath.dot(dx, dy, dz, axis.getX(), axis.getY(), axis.getZ()), -halfExtent, halfExtent);
+    }
+}
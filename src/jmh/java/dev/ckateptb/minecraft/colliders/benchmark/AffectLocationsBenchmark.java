@@ -0,0 +1,34 @@
+package dev.ckateptb.minecraft.colliders.benchmark;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AffectLocationsBenchmark {
+    @Param({"AABB", "SPHERE", "OBB", "RAY", "CAPSULE", "CAPSULE_RAY", "COMBINED"})
+    public BenchmarkShape shape;
+    @Param({"1", "4", "16"})
+    public double size;
+
+    private Collider collider;
+
+    @Setup
+    public void setup() {
+        this.collider = shape.create(BenchmarkShape.world("benchmark"), size);
+    }
+
+    @Benchmark
+    public Long affectLocations() {
+        // Locations are emitted after the consumer returns, so subscribe only once the query is fully set up
+        AtomicReference<Flux<Location>> reference = new AtomicReference<>();
+        collider.affectLocations(reference::set);
+        return reference.get().count().block();
+    }
+}
@@ -0,0 +1,80 @@
+package dev.ckateptb.minecraft.colliders.benchmark;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.geometry.OrientedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.geometry.SphereBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.World;
+import org.bukkit.util.EulerAngle;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Every collider type the benchmarks iterate over. {@code size} is the half extent (or radius) of the shape.
+ */
+public enum BenchmarkShape {
+    AABB {
+        @Override
+        public Collider create(World world, double size) {
+            return Colliders.aabb(world, new ImmutableVector(size, size, size));
+        }
+    },
+    SPHERE {
+        @Override
+        public Collider create(World world, double size) {
+            return Colliders.sphere(world, ImmutableVector.ZERO, size);
+        }
+    },
+    OBB {
+        @Override
+        public Collider create(World world, double size) {
+            return Colliders.obb(world, ImmutableVector.ZERO, new ImmutableVector(size, size / 2, size), ROTATION);
+        }
+    },
+    RAY {
+        @Override
+        public Collider create(World world, double size) {
+            return Colliders.ray(world, ImmutableVector.ZERO, new ImmutableVector(1, 0.5, 0.25), size, 0.5);
+        }
+    },
+    CAPSULE {
+        @Override
+        public Collider create(World world, double size) {
+            return Colliders.capsule(world, ImmutableVector.ZERO, new ImmutableVector(1, 0.5, 0.25), size, 0.5);
+        }
+    },
+    CAPSULE_RAY {
+        @Override
+        public Collider create(World world, double size) {
+            return Colliders.ray(world, ImmutableVector.ZERO, new ImmutableVector(1, 0.5, 0.25), size, 0.5, true);
+        }
+    },
+    COMBINED {
+        @Override
+        public Collider create(World world, double size) {
+            OrientedBoundingBoxCollider obb = Colliders.obb(world, ImmutableVector.ZERO, new ImmutableVector(size, size / 4, size), ROTATION);
+            SphereBoundingBoxCollider sphere = Colliders.sphere(world, ImmutableVector.ZERO, size * 0.75);
+            return Colliders.disk(world, obb, sphere);
+        }
+    };
+
+    private static final EulerAngle ROTATION = new EulerAngle(FastMath.toRadians(30), FastMath.toRadians(45), 0);
+
+    public abstract Collider create(World world, double size);
+
+    /**
+     * Colliders only need {@link World#equals(Object)} and {@link World#getName()} for narrow-phase checks,
+     * so a proxy is enough to run them outside of a server.
+     */
+    public static World world(String name) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class[]{World.class}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "getName", "toString" -> name;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
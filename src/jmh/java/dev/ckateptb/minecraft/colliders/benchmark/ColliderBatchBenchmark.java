@@ -0,0 +1,51 @@
+package dev.ckateptb.minecraft.colliders.benchmark;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.index.ColliderBatch;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ColliderBatchBenchmark {
+    @Param({"AABB", "SPHERE", "OBB"})
+    public BenchmarkShape receiver;
+    @Param({"AABB", "SPHERE"})
+    public BenchmarkShape candidate;
+    @Param({"4096"})
+    public int candidates;
+
+    private Collider receiverCollider;
+    private Collider[] candidateColliders;
+    private ColliderBatch batch;
+
+    @Setup
+    public void setup() {
+        World world = BenchmarkShape.world("benchmark");
+        Random random = new Random(42);
+        this.receiverCollider = receiver.create(world, 4);
+        this.candidateColliders = new Collider[candidates];
+        this.batch = new ColliderBatch(world, candidates);
+        for (int i = 0; i < candidates; i++) {
+            ImmutableVector position = new ImmutableVector(random.nextDouble() * 64 - 32, random.nextDouble() * 64 - 32, random.nextDouble() * 64 - 32);
+            candidateColliders[i] = candidate.create(world, 0.25).at(position);
+            batch.add(candidateColliders[i]);
+        }
+    }
+
+    @Benchmark
+    public BitSet intersectsMany() {
+        return receiverCollider.intersectsMany(candidateColliders);
+    }
+
+    @Benchmark
+    public BitSet batch() {
+        return batch.intersects(receiverCollider);
+    }
+}
@@ -0,0 +1,34 @@
+package dev.ckateptb.minecraft.colliders.benchmark;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContainsBenchmark {
+    @Param({"AABB", "SPHERE", "OBB", "RAY", "CAPSULE", "CAPSULE_RAY", "COMBINED"})
+    public BenchmarkShape shape;
+    /**
+     * Distance of the tested point from the collider center, 0.5 is inside every shape, 16 is outside
+     */
+    @Param({"0.5", "16"})
+    public double offset;
+
+    private Collider collider;
+    private ImmutableVector point;
+
+    @Setup
+    public void setup() {
+        this.collider = shape.create(BenchmarkShape.world("benchmark"), 2);
+        this.point = new ImmutableVector(offset, offset / 2, offset);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return collider.contains(point);
+    }
+}
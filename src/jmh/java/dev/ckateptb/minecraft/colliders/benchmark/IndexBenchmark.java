@@ -0,0 +1,94 @@
+package dev.ckateptb.minecraft.colliders.benchmark;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.index.ColliderIndex;
+import dev.ckateptb.minecraft.colliders.index.DynamicAabbTreeColliderIndex;
+import dev.ckateptb.minecraft.colliders.index.SpatialHashColliderIndex;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Skewed workload: many tiny projectiles mixed with a few zones spanning hundreds of blocks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IndexBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"SPATIAL_HASH", "AABB_TREE"})
+    public Backend backend;
+    @Param({"2000"})
+    public int projectiles;
+    @Param({"0", "16"})
+    public int zones;
+
+    private final Random random = new Random(42);
+    private World world;
+    private ColliderIndex index;
+    private int[] ids;
+    private Collider[] moved;
+    private Collider[] queries;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        this.world = BenchmarkShape.world("benchmark");
+        this.index = backend.supplier.get();
+        this.ids = new int[projectiles];
+        this.moved = new Collider[QUERIES];
+        this.queries = new Collider[QUERIES];
+        for (int i = 0; i < projectiles; i++) {
+            ids[i] = index.insert(this.projectile());
+        }
+        for (int i = 0; i < zones; i++) {
+            index.insert(Colliders.aabb(world, new ImmutableVector(100, 100, 100)).at(this.position()));
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            moved[i] = this.projectile();
+            queries[i] = this.projectile();
+        }
+    }
+
+    @Benchmark
+    public void query(Blackhole blackhole) {
+        index.query(queries[cursor++ & (QUERIES - 1)], blackhole::consume);
+    }
+
+    @Benchmark
+    public boolean update() {
+        int next = cursor++;
+        return index.update(ids[Math.floorMod(next, projectiles)], moved[next & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public void queryPairs(Blackhole blackhole) {
+        index.queryPairs((first, second) -> blackhole.consume(first));
+    }
+
+    private Collider projectile() {
+        return Colliders.sphere(world, this.position(), 0.25);
+    }
+
+    private ImmutableVector position() {
+        return new ImmutableVector(random.nextDouble() * 512, random.nextDouble() * 128, random.nextDouble() * 512);
+    }
+
+    public enum Backend {
+        SPATIAL_HASH(SpatialHashColliderIndex::new),
+        AABB_TREE(DynamicAabbTreeColliderIndex::new);
+
+        private final Supplier<ColliderIndex> supplier;
+
+        Backend(Supplier<ColliderIndex> supplier) {
+            this.supplier = supplier;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package dev.ckateptb.minecraft.colliders.benchmark;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IntersectsBenchmark {
+    @Param({"AABB", "SPHERE", "OBB", "RAY", "CAPSULE", "CAPSULE_RAY", "COMBINED"})
+    public BenchmarkShape first;
+    @Param({"AABB", "SPHERE", "OBB", "RAY", "CAPSULE", "CAPSULE_RAY", "COMBINED"})
+    public BenchmarkShape second;
+    /**
+     * Offset of the second collider, 1 keeps both shapes overlapping, 16 separates them
+     */
+    @Param({"1", "16"})
+    public double offset;
+
+    private Collider firstCollider;
+    private Collider secondCollider;
+
+    @Setup
+    public void setup() {
+        World world = BenchmarkShape.world("benchmark");
+        this.firstCollider = first.create(world, 2);
+        this.secondCollider = second.create(world, 2).at(new ImmutableVector(offset, offset / 2, offset));
+    }
+
+    @Benchmark
+    public boolean intersects() {
+        return firstCollider.intersects(secondCollider);
+    }
+}
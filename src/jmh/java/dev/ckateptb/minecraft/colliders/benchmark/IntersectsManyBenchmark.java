@@ -0,0 +1,51 @@
+package dev.ckateptb.minecraft.colliders.benchmark;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IntersectsManyBenchmark {
+    @Param({"AABB", "SPHERE", "OBB"})
+    public BenchmarkShape receiver;
+    @Param({"AABB", "SPHERE", "OBB"})
+    public BenchmarkShape candidate;
+    @Param({"256"})
+    public int candidates;
+
+    private Collider receiverCollider;
+    private Collider[] candidateColliders;
+
+    @Setup
+    public void setup() {
+        World world = BenchmarkShape.world("benchmark");
+        Random random = new Random(42);
+        this.receiverCollider = receiver.create(world, 4);
+        this.candidateColliders = new Collider[candidates];
+        for (int i = 0; i < candidates; i++) {
+            ImmutableVector position = new ImmutableVector(random.nextDouble() * 32 - 16, random.nextDouble() * 32 - 16, random.nextDouble() * 32 - 16);
+            candidateColliders[i] = candidate.create(world, 1).at(position);
+        }
+    }
+
+    @Benchmark
+    public BitSet loop() {
+        BitSet result = new BitSet(candidates);
+        for (int i = 0; i < candidates; i++) {
+            if (receiverCollider.intersects(candidateColliders[i])) result.set(i);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public BitSet intersectsMany() {
+        return receiverCollider.intersectsMany(candidateColliders);
+    }
+}
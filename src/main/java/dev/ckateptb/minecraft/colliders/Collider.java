@@ -1,6 +1,14 @@
 package dev.ckateptb.minecraft.colliders;
 
+import dev.ckateptb.minecraft.colliders.dispatch.CollisionDispatcher;
+import dev.ckateptb.minecraft.colliders.dispatch.ContactDispatcher;
+import dev.ckateptb.minecraft.colliders.dispatch.SweepDispatcher;
+import dev.ckateptb.minecraft.colliders.geometry.AxisAlignedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.geometry.Contact;
+import dev.ckateptb.minecraft.colliders.geometry.RayHit;
 import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.snapshot.BlockSnapshot;
+import dev.ckateptb.minecraft.colliders.snapshot.ChunkSnapshotCache;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -8,6 +16,10 @@ import org.bukkit.entity.Entity;
 import org.bukkit.util.Vector;
 import reactor.core.publisher.Flux;
 
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.function.Consumer;
 
 public interface Collider {
@@ -21,18 +33,81 @@ public interface Collider {
 
     boolean contains(Vector vector);
 
+    /**
+     * Exact test against the axis aligned box given by its bounds, shapes override it to skip creating a collider.
+     */
+    default boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return this.intersects(new AxisAlignedBoundingBoxCollider(this.getWorld(),
+                new ImmutableVector(minX, minY, minZ), new ImmutableVector(maxX, maxY, maxZ)));
+    }
+
+    /**
+     * Bit {@code i} of the result is set when {@code others[i]} intersects this collider.
+     */
+    default BitSet intersectsMany(Collider[] others) {
+        return CollisionDispatcher.intersectsMany(this, others);
+    }
+
+    default BitSet intersectsMany(List<? extends Collider> others) {
+        return this.intersectsMany(others.toArray(new Collider[0]));
+    }
+
+    /**
+     * Penetration of this collider into the other one, empty when they do not intersect.
+     * Moving this collider by the normal times the depth separates them.
+     */
+    default Optional<Contact> contact(Collider other) {
+        return ContactDispatcher.contact(this, other);
+    }
+
+    /**
+     * Nearest hit of the ray within {@code maxDistance}, the direction does not have to be normalized.
+     * Shapes without an exact ray test are hit at their bounding box.
+     */
+    default Optional<RayHit> rayCast(Vector origin, Vector direction, double maxDistance) {
+        return this.getBoundingBox().rayCast(origin, direction, maxDistance);
+    }
+
+    /**
+     * Fraction of {@code delta} this collider moves before it touches the target, 0 if they already intersect.
+     * Replaces testing the collider at several positions along the way, which misses thin targets between them.
+     */
+    default OptionalDouble sweep(Vector delta, Collider target) {
+        double time = SweepDispatcher.sweep(this, delta, target);
+        return time < 0 ? OptionalDouble.empty() : OptionalDouble.of(time);
+    }
+
     Collider affectEntities(Consumer<Flux<Entity>> consumer);
 
     Collider affectBlocks(Consumer<Flux<Block>> consumer);
 
     Collider affectLocations(Consumer<Flux<Location>> consumer);
 
+    /**
+     * Like {@link #affectBlocks(Consumer)}, but blocks are read from chunk snapshots captured once per tick on the main thread,
+     * so block data and shapes are tested off the main thread safely. Blocks of unloaded chunks are skipped.
+     */
+    default Collider affectBlockSnapshots(Consumer<Flux<BlockSnapshot>> consumer) {
+        consumer.accept(ChunkSnapshotCache.blocks(this));
+        return this;
+    }
+
     Collider grow(Vector vector);
 
     World getWorld();
 
     ImmutableVector getCenter();
 
+    default AxisAlignedBoundingBoxCollider getBoundingBox() {
+        ImmutableVector center = this.getCenter();
+        ImmutableVector halfExtents = this.getHalfExtents();
+        return new AxisAlignedBoundingBoxCollider(this.getWorld(), center.subtract(halfExtents), center.add(halfExtents));
+    }
+
+    default int getShapeOrdinal() {
+        return CollisionDispatcher.ordinal(this.getClass());
+    }
+
     default <T extends Collider> T at(Location location) {
         return (T) this.at(ImmutableVector.of(location));
     }
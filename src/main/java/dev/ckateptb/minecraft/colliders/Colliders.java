@@ -2,18 +2,24 @@ package dev.ckateptb.minecraft.colliders;
 
 import dev.ckateptb.common.tableclothcontainer.IoC;
 import dev.ckateptb.minecraft.colliders.geometry.*;
+import dev.ckateptb.minecraft.colliders.index.ColliderBatch;
+import dev.ckateptb.minecraft.colliders.index.ColliderIndex;
+import dev.ckateptb.minecraft.colliders.index.ColliderWorld;
+import dev.ckateptb.minecraft.colliders.listener.WorldUnloadListener;
 import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.pipeline.CollisionPipeline;
+import dev.ckateptb.minecraft.colliders.snapshot.BlockShapeCache;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.util.BoundingBox;
 import org.bukkit.util.EulerAngle;
 import org.bukkit.util.Vector;
 
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class Colliders extends JavaPlugin {
     public static final Function<World, AxisAlignedBoundingBoxCollider> BLOCK = world -> Colliders.aabb(world, ImmutableVector.ZERO, ImmutableVector.ONE);
@@ -23,6 +29,16 @@ public class Colliders extends JavaPlugin {
         IoC.scan(Colliders.class);
     }
 
+    @Override
+    public void onEnable() {
+        this.getServer().getPluginManager().registerEvents(new WorldUnloadListener(), this);
+    }
+
+    @Override
+    public void onDisable() {
+        IoC.getBean(CollisionPipeline.class).shutdown();
+    }
+
     public static AxisAlignedBoundingBoxCollider aabb(Entity entity) {
         ImmutableVector location = ImmutableVector.of(entity.getLocation());
         double x = location.getX();
@@ -34,18 +50,21 @@ public class Colliders extends JavaPlugin {
         return new AxisAlignedBoundingBoxCollider(entity.getWorld(), min, max).at(location);
     }
 
+    /**
+     * Box enclosing the collision shape of the block, see {@link BlockShapeCache} for exact multi box tests.
+     */
     public static AxisAlignedBoundingBoxCollider aabb(Block block) {
         World world = block.getWorld();
-        BoundingBox box = block.getBoundingBox();
-        if (block.getType().isAir()) {
+        double[] box = BlockShapeCache.bounds(BlockShapeCache.boxes(block));
+        if (box.length == 0) {
             return new AxisAlignedBoundingBoxCollider(world, ImmutableVector.ZERO, ImmutableVector.ZERO);
         }
-        if (box.getVolume() == 0 || !block.isCollidable()) {
-            return BLOCK.apply(world).at(block.getLocation().toCenterLocation());
-        }
-        ImmutableVector min = new ImmutableVector(box.getMinX(), box.getMinY(), box.getMinZ());
-        ImmutableVector max = new ImmutableVector(box.getMaxX(), box.getMaxY(), box.getMaxZ());
-        return new AxisAlignedBoundingBoxCollider(world, min, max);
+        int x = block.getX();
+        int y = block.getY();
+        int z = block.getZ();
+        return new AxisAlignedBoundingBoxCollider(world,
+                new ImmutableVector(x + box[0], y + box[1], z + box[2]),
+                new ImmutableVector(x + box[3], y + box[4], z + box[5]));
     }
 
     public static AxisAlignedBoundingBoxCollider aabb(Location location) {
@@ -69,6 +88,22 @@ public class Colliders extends JavaPlugin {
         return new SphereBoundingBoxCollider(world, center, radius);
     }
 
+    public static CapsuleCollider capsule(World world, Vector start, Vector end, double radius) {
+        return new CapsuleCollider(world, start, end, radius);
+    }
+
+    public static CapsuleCollider capsule(Location start, Location end, double radius) {
+        return capsule(start.getWorld(), ImmutableVector.of(start), ImmutableVector.of(end), radius);
+    }
+
+    /**
+     * Capsule of the given length along the direction, the direction does not have to be normalized.
+     */
+    public static CapsuleCollider capsule(World world, Vector start, Vector direction, double length, double radius) {
+        ImmutableVector origin = ImmutableVector.of(start);
+        return capsule(world, origin, origin.add(ImmutableVector.of(direction).normalize().multiply(length)), radius);
+    }
+
     public static CombinedBoundingBoxCollider combined(World world, CombinedBoundingBoxCollider.CombinedIntersectsMode mode, Collider... colliders) {
         return new CombinedBoundingBoxCollider(world, mode, colliders);
     }
@@ -81,12 +116,42 @@ public class Colliders extends JavaPlugin {
         return new OrientedBoundingBoxCollider(world, ImmutableVector.of(center), ImmutableVector.of(max), eulerAngle);
     }
 
+    public static ColliderWorld world(World world) {
+        return ColliderWorld.of(world);
+    }
+
+    public static ColliderWorld world(World world, Supplier<ColliderIndex> backend) {
+        return ColliderWorld.of(world, backend);
+    }
+
+    public static ColliderBatch batch(World world) {
+        return new ColliderBatch(world);
+    }
+
+    public static CollisionPipeline pipeline() {
+        return IoC.getBean(CollisionPipeline.class);
+    }
+
     public static RayTraceCollider ray(LivingEntity entity, double distance, double size) {
+        return ray(entity, distance, size, false);
+    }
+
+    /**
+     * @param capsule test the ray as a capsule of radius {@code size} instead of a box
+     */
+    public static RayTraceCollider ray(LivingEntity entity, double distance, double size, boolean capsule) {
         Location eyeLocation = entity.getEyeLocation();
-        return ray(entity.getWorld(), eyeLocation.toVector(), eyeLocation.getDirection(), distance, size);
+        return ray(entity.getWorld(), eyeLocation.toVector(), eyeLocation.getDirection(), distance, size, capsule);
     }
 
     public static RayTraceCollider ray(World world, Vector center, Vector direction, double distance, double size) {
-        return new RayTraceCollider(world, ImmutableVector.of(center), ImmutableVector.of(direction), distance, size);
+        return ray(world, center, direction, distance, size, false);
+    }
+
+    /**
+     * @param capsule test the ray as a capsule of radius {@code size} instead of a box
+     */
+    public static RayTraceCollider ray(World world, Vector center, Vector direction, double distance, double size, boolean capsule) {
+        return new RayTraceCollider(world, ImmutableVector.of(center), ImmutableVector.of(direction), distance, size, capsule);
     }
 }
\ No newline at end of file
@@ -9,13 +9,27 @@ import dev.ckateptb.common.tableclothcontainer.annotation.Component;
 import dev.ckateptb.minecraft.atom.Atom;
 import dev.ckateptb.minecraft.colliders.Collider;
 import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.geometry.AxisAlignedBoundingBoxCollider;
 import dev.ckateptb.minecraft.colliders.geometry.OrientedBoundingBoxCollider;
 import dev.ckateptb.minecraft.colliders.geometry.SphereBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.index.ColliderIndex;
+import dev.ckateptb.minecraft.colliders.index.SpatialHashColliderIndex;
 import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import dev.ckateptb.minecraft.colliders.math.VoxelIterator;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import dev.ckateptb.minecraft.colliders.metrics.LatencyHistogram;
 import dev.ckateptb.minecraft.nicotine.annotation.Schedule;
 import dev.ckateptb.minecraft.supervisor.Command;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import lombok.AccessLevel;
 import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
 import org.bukkit.*;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.potion.PotionEffect;
@@ -28,17 +42,27 @@ import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 @Getter
 @Component
 public class CollidersCommand implements Command<Colliders> {
+    private static final int STATS_LINES = 15;
+    // Viewers farther than a distance see every second point of what they would see closer, beyond the last nothing
+    private static final double[] DETAIL_DISTANCES = {16, 32, 64, 128};
+    private static final Particle.DustOptions CONTAINED = new Particle.DustOptions(Color.RED, 3.5f);
+    private static final Particle.DustOptions INTERSECTING = new Particle.DustOptions(Color.BLUE, 0.5f);
+    private static final Particle.DustOptions FREE = new Particle.DustOptions(Color.GREEN, 0.5f);
+
     private final Colliders plugin;
-    private final Set<Collider> colliders = new HashSet<>();
+    private final Set<Collider> colliders = ConcurrentHashMap.newKeySet();
+    @Getter(AccessLevel.NONE)
+    private volatile boolean dirty;
+    @Getter(AccessLevel.NONE)
+    private volatile List<DebugShape> shapes = List.of();
 
     public CollidersCommand() {
         this.plugin = IoC.getBean(Colliders.class);
@@ -60,7 +84,7 @@ public class CollidersCommand implements Command<Colliders> {
     @CommandPermission("colliders.admin")
     public void aabbStatic(Player player, @Argument("x") Double x, @Argument("y") Double y, @Argument("z") Double z) {
         ImmutableVector immutableVector = new ImmutableVector(x, y, z);
-        colliders.add(Colliders.aabb(player.getWorld(), immutableVector.negative(), immutableVector).at(player.getLocation()));
+        this.addStatic(Colliders.aabb(player.getWorld(), immutableVector.negative(), immutableVector).at(player.getLocation()));
     }
 
     @CommandMethod("colliders debug direct sphere <radius> [duration]")
@@ -77,7 +101,7 @@ public class CollidersCommand implements Command<Colliders> {
     @CommandMethod("colliders debug static sphere <radius>")
     @CommandPermission("colliders.admin")
     public void sphereStatic(Player player, @Argument("radius") Double radius) {
-        colliders.add(Colliders.sphere(player.getWorld(), ImmutableVector.ZERO, radius).at(player.getLocation()));
+        this.addStatic(Colliders.sphere(player.getWorld(), ImmutableVector.ZERO, radius).at(player.getLocation()));
     }
 
     @CommandMethod("colliders debug direct obb <x> <y> <z> [duration]")
@@ -106,7 +130,7 @@ public class CollidersCommand implements Command<Colliders> {
         float yaw = location.getYaw();
         float roll = 0;
         EulerAngle eulerAngle = new ImmutableVector(pitch, yaw, roll).radians().toEulerAngle();
-        colliders.add(Colliders.obb(player.getWorld(), ImmutableVector.ZERO, immutableVector, eulerAngle).at(location));
+        this.addStatic(Colliders.obb(player.getWorld(), ImmutableVector.ZERO, immutableVector, eulerAngle).at(location));
     }
 
     @CommandMethod("colliders debug direct ray <distance> <size> [duration]")
@@ -127,7 +151,7 @@ public class CollidersCommand implements Command<Colliders> {
     public void rayStatic(Player player, @Argument("distance") Double distance, @Argument("size") Double size) {
         Location eyeLocation = player.getEyeLocation();
         Vector direction = eyeLocation.getDirection();
-        colliders.add(Colliders.ray(player.getWorld(), ImmutableVector.ZERO, direction, distance, size).at(eyeLocation));
+        this.addStatic(Colliders.ray(player.getWorld(), ImmutableVector.ZERO, direction, distance, size).at(eyeLocation));
     }
 
     @CommandMethod("colliders debug direct disc <x> <y> <z> [duration]")
@@ -162,47 +186,114 @@ public class CollidersCommand implements Command<Colliders> {
         World world = player.getWorld();
         OrientedBoundingBoxCollider obb = Colliders.obb(world, ImmutableVector.ZERO, immutableVector, eulerAngle);
         SphereBoundingBoxCollider sphere = Colliders.sphere(world, ImmutableVector.ZERO, immutableVector.maxComponent() * 0.75);
-        colliders.add(Colliders.disk(world, obb, sphere).at(location));
+        this.addStatic(Colliders.disk(world, obb, sphere).at(location));
     }
 
     @CommandMethod("colliders debug static clear")
     @CommandPermission("colliders.admin")
     public void clearStatic() {
         colliders.clear();
+        this.dirty = true;
+    }
+
+    private void addStatic(Collider collider) {
+        colliders.add(collider);
+        this.dirty = true;
+    }
+
+    @CommandMethod("colliders stats")
+    @CommandPermission("colliders.admin")
+    public void stats(CommandSender sender) {
+        if (!CollisionMetrics.isEnabled()) {
+            sender.sendMessage(ChatColor.GRAY + "Metrics are disabled, enable them with /colliders stats enable");
+        }
+        List<LatencyHistogram> histograms = CollisionMetrics.getHistograms();
+        histograms.removeIf(histogram -> histogram.getCount() == 0);
+        histograms.sort(Comparator.comparingLong(LatencyHistogram::getTotalNanos).reversed());
+        if (histograms.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "Nothing recorded yet");
+            return;
+        }
+        sender.sendMessage(ChatColor.GOLD + "Colliders by total time, latencies in us:");
+        for (LatencyHistogram histogram : histograms.subList(0, Math.min(STATS_LINES, histograms.size()))) {
+            sender.sendMessage(String.format(Locale.ROOT, "%s%s%s: %d calls, %.1f ms, mean %.1f, p50 %.1f, p99 %.1f, max %.1f",
+                    ChatColor.YELLOW, histogram.getName(), ChatColor.WHITE, histogram.getCount(),
+                    histogram.getTotalNanos() / 1e6, histogram.getMeanNanos() / 1e3,
+                    histogram.getPercentileNanos(50) / 1e3, histogram.getPercentileNanos(99) / 1e3, histogram.getMaxNanos() / 1e3));
+        }
     }
 
+    @CommandMethod("colliders stats enable [plugins]")
+    @CommandPermission("colliders.admin")
+    public void statsEnable(CommandSender sender, @Argument("plugins") Boolean plugins) {
+        CollisionMetrics.setAttributePlugins(plugins != null && plugins);
+        CollisionMetrics.setEnabled(true);
+        sender.sendMessage(ChatColor.GREEN + "Metrics enabled" + (CollisionMetrics.isAttributePlugins() ? " with plugin attribution" : ""));
+    }
+
+    @CommandMethod("colliders stats disable")
+    @CommandPermission("colliders.admin")
+    public void statsDisable(CommandSender sender) {
+        CollisionMetrics.setEnabled(false);
+        sender.sendMessage(ChatColor.GREEN + "Metrics disabled");
+    }
+
+    @CommandMethod("colliders stats reset")
+    @CommandPermission("colliders.admin")
+    public void statsReset(CommandSender sender) {
+        CollisionMetrics.reset();
+        sender.sendMessage(ChatColor.GREEN + "Metrics reset");
+    }
+
+    /**
+     * Static colliders do not move, so their surface points and colours are computed once after the set changes.
+     * Every cycle only sends each player the points of the colliders near them.
+     */
     @Schedule(async = true, fixedRate = 5, initialDelay = 0)
     public void renderStatic() {
-        Collider[] colliders = this.colliders.toArray(Collider[]::new);
-        for (Collider collider : colliders) {
-            collider.affectEntities(flux -> flux
+        if (dirty) {
+            this.dirty = false;
+            this.shapes = buildShapes(colliders.toArray(Collider[]::new));
+        }
+        List<DebugShape> shapes = this.shapes;
+        if (shapes.isEmpty()) return;
+        for (DebugShape shape : shapes) {
+            shape.collider.affectEntities(flux -> flux
                     .publishOn(Atom.syncScheduler())
                     .subscribe(entity -> {
                         if (entity instanceof LivingEntity livingEntity) {
                             livingEntity.addPotionEffect(new PotionEffect(PotionEffectType.GLOWING, 5, 1));
                         }
                     }));
-            collider.affectLocations(flux -> flux
-                    .publishOn(Schedulers.boundedElastic())
-                    .subscribe(location -> {
-                        ParticleBuilder particle = Particle.REDSTONE.builder().force(true).location(location).count(1);
-                        if (Arrays.stream(colliders).anyMatch(other -> {
-                            if (collider == other) return false;
-                            return other.contains(location.toVector());
-                        })) {
-                            particle.color(Color.RED, 3.5f).spawn();
-                        } else if (Arrays.stream(colliders).anyMatch(other -> {
-                            if (collider == other) return false;
-                            return other.intersects(collider);
-                        })) {
-                            particle.color(Color.BLUE, 0.5f).spawn();
-                        } else {
-                            particle.color(Color.GREEN, 0.5f).spawn();
-                        }
-                    }));
+        }
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            Location location = player.getLocation();
+            for (DebugShape shape : shapes) {
+                shape.render(player, location);
+            }
         }
     }
 
+    // Intersecting pairs and points inside other colliders come from one index per world
+    private static List<DebugShape> buildShapes(Collider[] colliders) {
+        Map<World, ColliderIndex> indexes = new HashMap<>();
+        for (Collider collider : colliders) {
+            indexes.computeIfAbsent(collider.getWorld(), world -> new SpatialHashColliderIndex()).insert(collider);
+        }
+        Set<Collider> intersecting = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ColliderIndex index : indexes.values()) {
+            index.queryPairs((first, second) -> {
+                intersecting.add(first);
+                intersecting.add(second);
+            });
+        }
+        List<DebugShape> shapes = new ArrayList<>(colliders.length);
+        for (Collider collider : colliders) {
+            shapes.add(new DebugShape(collider, indexes.get(collider.getWorld()), intersecting.contains(collider)));
+        }
+        return shapes;
+    }
+
     private void renderDirect(Collider collider, Player player, Double distance, Long duration) {
         if (duration == null) {
             collider.at(getCenter(distance, player))
@@ -240,4 +331,61 @@ public class CollidersCommand implements Command<Colliders> {
         Vector direction = eyeLocation.getDirection().multiply(distance);
         return ImmutableVector.of(eyeLocation.add(direction));
     }
+
+    private static class DebugShape {
+        private final Collider collider;
+        private final AxisAlignedBoundingBoxCollider bounds;
+        // Block keys of the surface, only blocks with a side outside of the shape are drawn
+        private final long[] points;
+        private final Particle.DustOptions[] colors;
+
+        private DebugShape(Collider collider, ColliderIndex index, boolean intersecting) {
+            this.collider = collider;
+            this.bounds = collider.getBoundingBox();
+            LongOpenHashSet blocks = new LongOpenHashSet();
+            VoxelIterator.forEachBlock(collider, blocks::add);
+            LongArrayList points = new LongArrayList();
+            List<Particle.DustOptions> colors = new ArrayList<>();
+            for (LongIterator iterator = blocks.iterator(); iterator.hasNext(); ) {
+                long key = iterator.nextLong();
+                int x = Block.getBlockKeyX(key);
+                int y = Block.getBlockKeyY(key);
+                int z = Block.getBlockKeyZ(key);
+                if (blocks.contains(Block.getBlockKey(x + 1, y, z)) && blocks.contains(Block.getBlockKey(x - 1, y, z))
+                        && blocks.contains(Block.getBlockKey(x, y + 1, z)) && blocks.contains(Block.getBlockKey(x, y - 1, z))
+                        && blocks.contains(Block.getBlockKey(x, y, z + 1)) && blocks.contains(Block.getBlockKey(x, y, z - 1))) {
+                    continue;
+                }
+                boolean[] contained = {false};
+                index.query(new Vector(x + 0.5, y + 0.5, z + 0.5), other -> contained[0] |= other != collider);
+                points.add(key);
+                colors.add(contained[0] ? CONTAINED : intersecting ? INTERSECTING : FREE);
+            }
+            this.points = points.toLongArray();
+            this.colors = colors.toArray(Particle.DustOptions[]::new);
+        }
+
+        private void render(Player player, Location location) {
+            World world = collider.getWorld();
+            if (!world.equals(location.getWorld())) return;
+            ImmutableVector min = bounds.getMin();
+            ImmutableVector max = bounds.getMax();
+            double distance = FastMath.sqrt(VectorMath.distanceSquaredToAABB(location.getX(), location.getY(), location.getZ(),
+                    min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ()));
+            int step = 1;
+            for (double detailDistance : DETAIL_DISTANCES) {
+                if (distance <= detailDistance) {
+                    ParticleBuilder particle = Particle.REDSTONE.builder().receivers(player).force(true).count(1);
+                    for (int i = 0; i < points.length; i += step) {
+                        long key = points[i];
+                        particle.location(world, Block.getBlockKeyX(key) + 0.5, Block.getBlockKeyY(key) + 0.5, Block.getBlockKeyZ(key) + 0.5)
+                                .data(colors[i])
+                                .spawn();
+                    }
+                    return;
+                }
+                step <<= 1;
+            }
+        }
+    }
 }
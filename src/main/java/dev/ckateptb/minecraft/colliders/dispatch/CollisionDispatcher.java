@@ -0,0 +1,174 @@
+package dev.ckateptb.minecraft.colliders.dispatch;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.geometry.*;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+/**
+ * Resolves {@link Collider#intersects(Collider)} through a table of shape pairs.
+ * <p>
+ * Every collider class gets a shape ordinal, a pair test is looked up by the ordinals of both colliders.
+ * Pairs are registered once and answer both argument orders. Shapes made of other shapes (or proxies, like rays)
+ * register a test against any collider, it is used when there is no dedicated pair.
+ * Third party plugins can register their own shapes the same way.
+ */
+public class CollisionDispatcher {
+    private static final AtomicInteger NEXT_ORDINAL = new AtomicInteger();
+    private static final ClassValue<Integer> ORDINALS = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return NEXT_ORDINAL.getAndIncrement();
+        }
+    };
+    private static final ShapePairTable<BiPredicate<Collider, Collider>> PAIRS = new ShapePairTable<>();
+    private static volatile Object[] any = new Object[0];
+
+    static {
+        register(AxisAlignedBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider.class, (first, second) -> {
+            ImmutableVector min = second.getMin();
+            ImmutableVector max = second.getMax();
+            return first.intersects(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+        });
+        register(SphereBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider.class, (sphere, aabb) -> {
+            ImmutableVector min = aabb.getMin();
+            ImmutableVector max = aabb.getMax();
+            return sphere.intersects(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+        });
+        register(OrientedBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider.class, (obb, aabb) -> {
+            ImmutableVector min = aabb.getMin();
+            ImmutableVector max = aabb.getMax();
+            return obb.intersects(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+        });
+        register(SphereBoundingBoxCollider.class, SphereBoundingBoxCollider.class, (first, second) -> {
+            ImmutableVector center = second.getCenter();
+            return first.intersectsSphere(center.getX(), center.getY(), center.getZ(), second.getRadius());
+        });
+        register(OrientedBoundingBoxCollider.class, SphereBoundingBoxCollider.class, (obb, sphere) -> {
+            ImmutableVector center = sphere.getCenter();
+            return obb.intersectsSphere(center.getX(), center.getY(), center.getZ(), sphere.getRadius());
+        });
+        register(OrientedBoundingBoxCollider.class, OrientedBoundingBoxCollider.class, OrientedBoundingBoxCollider::intersectsOBB);
+        register(CapsuleCollider.class, AxisAlignedBoundingBoxCollider.class, (capsule, aabb) -> {
+            ImmutableVector min = aabb.getMin();
+            ImmutableVector max = aabb.getMax();
+            return capsule.intersects(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+        });
+        register(CapsuleCollider.class, SphereBoundingBoxCollider.class, (capsule, sphere) -> {
+            ImmutableVector center = sphere.getCenter();
+            return capsule.intersectsSphere(center.getX(), center.getY(), center.getZ(), sphere.getRadius());
+        });
+        register(CapsuleCollider.class, OrientedBoundingBoxCollider.class, (capsule, obb) -> {
+            ImmutableVector start = capsule.getStart();
+            ImmutableVector end = capsule.getEnd();
+            return obb.intersectsCapsule(start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ(), capsule.getRadius());
+        });
+        register(CapsuleCollider.class, CapsuleCollider.class, CapsuleCollider::intersectsCapsule);
+        registerAny(RayTraceCollider.class, (ray, other) -> intersects(ray.getShape(), other));
+        registerAny(CombinedBoundingBoxCollider.class, (combined, other) ->
+                combined.getMode() == CombinedBoundingBoxCollider.CombinedIntersectsMode.ANY
+                        ? combined.intersectsAny(other)
+                        : combined.intersectsAll(other));
+    }
+
+    public static int ordinal(Class<? extends Collider> type) {
+        return ORDINALS.get(type);
+    }
+
+    /**
+     * Registers the intersection test of two shapes, it is used for both argument orders.
+     */
+    @SuppressWarnings("unchecked")
+    public static <A extends Collider, B extends Collider> void register(Class<A> first, Class<B> second, BiPredicate<? super A, ? super B> test) {
+        int firstOrdinal = ordinal(first);
+        int secondOrdinal = ordinal(second);
+        PAIRS.put(firstOrdinal, secondOrdinal, (a, b) -> test.test((A) a, (B) b));
+        if (firstOrdinal != secondOrdinal) {
+            PAIRS.put(secondOrdinal, firstOrdinal, (b, a) -> test.test((A) a, (B) b));
+        }
+    }
+
+    /**
+     * Registers the intersection test of a shape against any collider without a dedicated pair.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <A extends Collider> void registerAny(Class<A> type, BiPredicate<? super A, Collider> test) {
+        int ordinal = ordinal(type);
+        Object[] any = Arrays.copyOf(CollisionDispatcher.any, FastMath.max(CollisionDispatcher.any.length, ordinal + 1));
+        any[ordinal] = (BiPredicate<Collider, Collider>) (a, b) -> test.test((A) a, b);
+        CollisionDispatcher.any = any;
+    }
+
+    public static boolean intersects(Collider first, Collider second) {
+        if (!CollisionMetrics.isEnabled()) return dispatch(first, second);
+        long start = System.nanoTime();
+        boolean intersects = dispatch(first, second);
+        CollisionMetrics.recordIntersects(first, second, System.nanoTime() - start);
+        return intersects;
+    }
+
+    private static boolean dispatch(Collider first, Collider second) {
+        if (!first.getWorld().equals(second.getWorld())) return false;
+        int firstOrdinal = first.getShapeOrdinal();
+        int secondOrdinal = second.getShapeOrdinal();
+        BiPredicate<Collider, Collider> test = PAIRS.get(firstOrdinal, secondOrdinal);
+        if (test != null) return test.test(first, second);
+        test = getAny(firstOrdinal);
+        if (test != null) return test.test(first, second);
+        test = getAny(secondOrdinal);
+        if (test != null) return test.test(second, first);
+        return false;
+    }
+
+    /**
+     * Tests the receiver against every candidate, the pair test is only looked up again when the candidate shape changes.
+     */
+    public static BitSet intersectsMany(Collider first, Collider[] others) {
+        if (!CollisionMetrics.isEnabled()) return dispatchMany(first, others);
+        long start = System.nanoTime();
+        BitSet result = dispatchMany(first, others);
+        CollisionMetrics.recordIntersectsMany(first, others, System.nanoTime() - start);
+        return result;
+    }
+
+    private static BitSet dispatchMany(Collider first, Collider[] others) {
+        BitSet result = new BitSet(others.length);
+        World world = first.getWorld();
+        int firstOrdinal = first.getShapeOrdinal();
+        int lastOrdinal = -1;
+        BiPredicate<Collider, Collider> test = null;
+        for (int i = 0; i < others.length; i++) {
+            Collider second = others[i];
+            if (!world.equals(second.getWorld())) continue;
+            int secondOrdinal = second.getShapeOrdinal();
+            if (secondOrdinal != lastOrdinal) {
+                test = resolve(firstOrdinal, secondOrdinal);
+                lastOrdinal = secondOrdinal;
+            }
+            if (test != null && test.test(first, second)) result.set(i);
+        }
+        return result;
+    }
+
+    private static BiPredicate<Collider, Collider> resolve(int firstOrdinal, int secondOrdinal) {
+        BiPredicate<Collider, Collider> test = PAIRS.get(firstOrdinal, secondOrdinal);
+        if (test != null) return test;
+        test = getAny(firstOrdinal);
+        if (test != null) return test;
+        BiPredicate<Collider, Collider> swapped = getAny(secondOrdinal);
+        return swapped == null ? null : (first, second) -> swapped.test(second, first);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiPredicate<Collider, Collider> getAny(int ordinal) {
+        Object[] any = CollisionDispatcher.any;
+        return ordinal < any.length ? (BiPredicate<Collider, Collider>) any[ordinal] : null;
+    }
+}
@@ -0,0 +1,92 @@
+package dev.ckateptb.minecraft.colliders.dispatch;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.geometry.*;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+/**
+ * Resolves {@link Collider#contact(Collider)} through a table of shape pairs, like {@link CollisionDispatcher}.
+ * <p>
+ * A pair registered once answers both argument orders, the normal is negated for the swapped order.
+ * Pairs without a contact test use the contact of their bounding boxes once they are known to intersect.
+ */
+public class ContactDispatcher {
+    private static final ShapePairTable<BiFunction<Collider, Collider, Optional<Contact>>> PAIRS = new ShapePairTable<>();
+    private static volatile Object[] any = new Object[0];
+
+    static {
+        register(AxisAlignedBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider::contact);
+        register(SphereBoundingBoxCollider.class, SphereBoundingBoxCollider.class, SphereBoundingBoxCollider::contact);
+        register(SphereBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider.class, SphereBoundingBoxCollider::contact);
+        register(SphereBoundingBoxCollider.class, OrientedBoundingBoxCollider.class, SphereBoundingBoxCollider::contact);
+        register(OrientedBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider.class, OrientedBoundingBoxCollider::contact);
+        register(OrientedBoundingBoxCollider.class, OrientedBoundingBoxCollider.class, OrientedBoundingBoxCollider::contact);
+        register(CapsuleCollider.class, SphereBoundingBoxCollider.class, CapsuleCollider::contact);
+        register(CapsuleCollider.class, CapsuleCollider.class, CapsuleCollider::contact);
+        registerAny(RayTraceCollider.class, (ray, other) -> contact(ray.getShape(), other));
+        // Leaving any child separates from the intersection of all, leaving the deepest child is needed for the union
+        registerAny(CombinedBoundingBoxCollider.class, (combined, other) -> {
+            boolean any = combined.getMode() == CombinedBoundingBoxCollider.CombinedIntersectsMode.ANY;
+            Contact result = null;
+            for (int i = 0; i < combined.getColliderCount(); i++) {
+                Contact contact = contact(combined.getCollider(i), other).orElse(null);
+                if (contact == null) {
+                    if (any) continue;
+                    return Optional.empty();
+                }
+                if (result == null || (any ? contact.getDepth() > result.getDepth() : contact.getDepth() < result.getDepth())) {
+                    result = contact;
+                }
+            }
+            return Optional.ofNullable(result);
+        });
+    }
+
+    /**
+     * Registers the contact test of two shapes, it is used for both argument orders.
+     */
+    @SuppressWarnings("unchecked")
+    public static <A extends Collider, B extends Collider> void register(Class<A> first, Class<B> second, BiFunction<? super A, ? super B, Optional<Contact>> test) {
+        int firstOrdinal = CollisionDispatcher.ordinal(first);
+        int secondOrdinal = CollisionDispatcher.ordinal(second);
+        PAIRS.put(firstOrdinal, secondOrdinal, (a, b) -> test.apply((A) a, (B) b));
+        if (firstOrdinal != secondOrdinal) {
+            PAIRS.put(secondOrdinal, firstOrdinal, (b, a) -> test.apply((A) a, (B) b).map(Contact::negate));
+        }
+    }
+
+    /**
+     * Registers the contact test of a shape against any collider without a dedicated pair.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <A extends Collider> void registerAny(Class<A> type, BiFunction<? super A, Collider, Optional<Contact>> test) {
+        int ordinal = CollisionDispatcher.ordinal(type);
+        Object[] any = Arrays.copyOf(ContactDispatcher.any, FastMath.max(ContactDispatcher.any.length, ordinal + 1));
+        any[ordinal] = (BiFunction<Collider, Collider, Optional<Contact>>) (a, b) -> test.apply((A) a, b);
+        ContactDispatcher.any = any;
+    }
+
+    public static Optional<Contact> contact(Collider first, Collider second) {
+        if (!first.getWorld().equals(second.getWorld())) return Optional.empty();
+        int firstOrdinal = first.getShapeOrdinal();
+        int secondOrdinal = second.getShapeOrdinal();
+        BiFunction<Collider, Collider, Optional<Contact>> test = PAIRS.get(firstOrdinal, secondOrdinal);
+        if (test != null) return test.apply(first, second);
+        test = getAny(firstOrdinal);
+        if (test != null) return test.apply(first, second);
+        test = getAny(secondOrdinal);
+        if (test != null) return test.apply(second, first).map(Contact::negate);
+        if (!CollisionDispatcher.intersects(first, second)) return Optional.empty();
+        return first.getBoundingBox().contact(second.getBoundingBox());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiFunction<Collider, Collider, Optional<Contact>> getAny(int ordinal) {
+        Object[] any = ContactDispatcher.any;
+        return ordinal < any.length ? (BiFunction<Collider, Collider, Optional<Contact>>) any[ordinal] : null;
+    }
+}
@@ -0,0 +1,31 @@
+package dev.ckateptb.minecraft.colliders.dispatch;
+
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.Arrays;
+
+/**
+ * Square table of functions indexed by the shape ordinals of two colliders.
+ * Reads are a plain array lookup, writes copy the table, so it is safe to register pairs at any time.
+ */
+public class ShapePairTable<F> {
+    private volatile Object[][] table = new Object[0][0];
+
+    @SuppressWarnings("unchecked")
+    public F get(int first, int second) {
+        Object[][] table = this.table;
+        if (first >= table.length || second >= table.length) return null;
+        return (F) table[first][second];
+    }
+
+    public synchronized void put(int first, int second, F function) {
+        Object[][] table = this.table;
+        int size = FastMath.max(table.length, FastMath.max(first, second) + 1);
+        Object[][] copy = new Object[size][];
+        for (int i = 0; i < size; i++) {
+            copy[i] = i < table.length ? Arrays.copyOf(table[i], size) : new Object[size];
+        }
+        copy[first][second] = function;
+        this.table = copy;
+    }
+}
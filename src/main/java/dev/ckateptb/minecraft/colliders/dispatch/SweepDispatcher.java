@@ -0,0 +1,160 @@
+package dev.ckateptb.minecraft.colliders.dispatch;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.geometry.*;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.util.Vector;
+
+import java.util.Arrays;
+
+/**
+ * Resolves {@link Collider#sweep(Vector, Collider)} through a table of shape pairs, like {@link CollisionDispatcher}.
+ * <p>
+ * A sweep returns the fraction of the delta the first collider moves before it touches the second one, or -1.
+ * A pair registered once answers both argument orders, the second collider then moves by the negated delta.
+ * Pairs without a sweep are sampled along the delta with intersection tests and refined by bisection.
+ */
+public class SweepDispatcher {
+    private static final int MAX_SAMPLES = 256;
+    private static final int REFINEMENTS = 16;
+    private static final ShapePairTable<Sweep<Collider, Collider>> PAIRS = new ShapePairTable<>();
+    private static volatile Object[] any = new Object[0];
+
+    @FunctionalInterface
+    public interface Sweep<A extends Collider, B extends Collider> {
+        double sweep(A moving, Vector delta, B target);
+    }
+
+    static {
+        register(AxisAlignedBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider::sweep);
+        register(SphereBoundingBoxCollider.class, SphereBoundingBoxCollider.class, SphereBoundingBoxCollider::sweep);
+        register(SphereBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider.class, SphereBoundingBoxCollider::sweep);
+        register(SphereBoundingBoxCollider.class, OrientedBoundingBoxCollider.class, SphereBoundingBoxCollider::sweep);
+        register(OrientedBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider.class, OrientedBoundingBoxCollider::sweep);
+        register(OrientedBoundingBoxCollider.class, OrientedBoundingBoxCollider.class, OrientedBoundingBoxCollider::sweep);
+        registerAny(RayTraceCollider.class, (ray, delta, other) -> sweep(ray.getShape(), delta, other));
+        registerAny(CombinedBoundingBoxCollider.class, (combined, delta, other) -> {
+            if (combined.getMode() == CombinedBoundingBoxCollider.CombinedIntersectsMode.ALL) {
+                return sample(combined, delta, other);
+            }
+            double first = -1;
+            for (int i = 0; i < combined.getColliderCount(); i++) {
+                double time = sweep(combined.getCollider(i), delta, other);
+                if (time >= 0 && (first < 0 || time < first)) first = time;
+            }
+            return first;
+        });
+    }
+
+    /**
+     * Registers the sweep of two shapes, it is used for both argument orders.
+     */
+    @SuppressWarnings("unchecked")
+    public static <A extends Collider, B extends Collider> void register(Class<A> first, Class<B> second, Sweep<? super A, ? super B> sweep) {
+        int firstOrdinal = CollisionDispatcher.ordinal(first);
+        int secondOrdinal = CollisionDispatcher.ordinal(second);
+        PAIRS.put(firstOrdinal, secondOrdinal, (a, delta, b) -> sweep.sweep((A) a, delta, (B) b));
+        if (firstOrdinal != secondOrdinal) {
+            PAIRS.put(secondOrdinal, firstOrdinal, (b, delta, a) -> sweep.sweep((A) a, negate(delta), (B) b));
+        }
+    }
+
+    /**
+     * Registers the sweep of a shape against any collider without a dedicated pair.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <A extends Collider> void registerAny(Class<A> type, Sweep<? super A, Collider> sweep) {
+        int ordinal = CollisionDispatcher.ordinal(type);
+        Object[] any = Arrays.copyOf(SweepDispatcher.any, FastMath.max(SweepDispatcher.any.length, ordinal + 1));
+        any[ordinal] = (Sweep<Collider, Collider>) (a, delta, b) -> sweep.sweep((A) a, delta, b);
+        SweepDispatcher.any = any;
+    }
+
+    public static double sweep(Collider moving, Vector delta, Collider target) {
+        if (!moving.getWorld().equals(target.getWorld())) return -1;
+        int movingOrdinal = moving.getShapeOrdinal();
+        int targetOrdinal = target.getShapeOrdinal();
+        Sweep<Collider, Collider> sweep = PAIRS.get(movingOrdinal, targetOrdinal);
+        if (sweep != null) return sweep.sweep(moving, delta, target);
+        sweep = getAny(movingOrdinal);
+        if (sweep != null) return sweep.sweep(moving, delta, target);
+        sweep = getAny(targetOrdinal);
+        if (sweep != null) return sweep.sweep(target, negate(delta), moving);
+        return sample(moving, delta, target);
+    }
+
+    // Nothing is sampled before the bounding boxes touch. Steps are no longer than the smallest half extents
+    // of both shapes together, so the moving shape can not cross the middle of the target between two samples,
+    // only grazing contacts shorter than a step may be missed. When that takes more than MAX_SAMPLES steps,
+    // or a shape has no thickness, the sweep gives up and returns where the bounding boxes touch,
+    // which is never later than where the shapes do
+    private static double sample(Collider moving, Vector delta, Collider target) {
+        if (moving.intersects(target)) return 0;
+        double length = delta.length();
+        if (length == 0) return -1;
+        double start = moving.getBoundingBox().sweep(delta, target.getBoundingBox());
+        if (start < 0) return -1;
+        double step = minExtent(moving) + minExtent(target);
+        double steps = FastMath.ceil((1 - start) * length / step);
+        if (!(steps <= MAX_SAMPLES)) return start;
+        int samples = FastMath.max((int) steps, 1);
+        double previous = start;
+        for (int i = 1; i <= samples; i++) {
+            double time = i == samples ? 1 : start + (1 - start) * i / samples;
+            if (translate(moving, delta, time).intersects(target)) {
+                double low = previous;
+                double high = time;
+                for (int j = 0; j < REFINEMENTS; j++) {
+                    double middle = (low + high) / 2;
+                    if (translate(moving, delta, middle).intersects(target)) {
+                        high = middle;
+                    } else {
+                        low = middle;
+                    }
+                }
+                return high;
+            }
+            previous = time;
+        }
+        return -1;
+    }
+
+    private static Collider translate(Collider collider, Vector delta, double time) {
+        if (collider instanceof CombinedBoundingBoxCollider combined) {
+            Collider[] children = new Collider[combined.getColliderCount()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = translate(combined.getCollider(i), delta, time);
+            }
+            return new CombinedBoundingBoxCollider(combined.getWorld(), combined.getMode(), children);
+        }
+        ImmutableVector center = collider.getCenter();
+        return collider.at(new Vector(center.getX() + delta.getX() * time,
+                center.getY() + delta.getY() * time, center.getZ() + delta.getZ() * time));
+    }
+
+    // Half of the thinnest width of the shape, the half extents of a capsule span its whole bounds
+    private static double minExtent(Collider collider) {
+        if (collider instanceof RayTraceCollider ray) return minExtent(ray.getShape());
+        if (collider instanceof CapsuleCollider capsule) return capsule.getRadius();
+        if (collider instanceof CombinedBoundingBoxCollider combined) {
+            double min = Double.MAX_VALUE;
+            for (int i = 0; i < combined.getColliderCount(); i++) {
+                min = FastMath.min(min, minExtent(combined.getCollider(i)));
+            }
+            return min;
+        }
+        ImmutableVector halfExtents = collider.getHalfExtents();
+        return FastMath.min(FastMath.abs(halfExtents.getX()), FastMath.min(FastMath.abs(halfExtents.getY()), FastMath.abs(halfExtents.getZ())));
+    }
+
+    private static Vector negate(Vector delta) {
+        return new Vector(-delta.getX(), -delta.getY(), -delta.getZ());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Sweep<Collider, Collider> getAny(int ordinal) {
+        Object[] any = SweepDispatcher.any;
+        return ordinal < any.length ? (Sweep<Collider, Collider>) any[ordinal] : null;
+    }
+}
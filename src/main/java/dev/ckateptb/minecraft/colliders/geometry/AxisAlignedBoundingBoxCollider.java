@@ -1,10 +1,14 @@
 package dev.ckateptb.minecraft.colliders.geometry;
 
 import com.google.common.base.Objects;
-import dev.ckateptb.minecraft.atom.Atom;
 import dev.ckateptb.minecraft.colliders.Collider;
-import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.dispatch.CollisionDispatcher;
 import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import dev.ckateptb.minecraft.colliders.math.VoxelIterator;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import dev.ckateptb.minecraft.colliders.snapshot.BlockShapeCache;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshotCache;
 import lombok.Getter;
 import org.apache.commons.math3.util.FastMath;
 import org.bukkit.Location;
@@ -13,16 +17,14 @@ import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
 import org.bukkit.util.Vector;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
-import reactor.core.scheduler.Schedulers;
-import reactor.util.function.Tuple3;
-import reactor.util.function.Tuples;
 
+import java.util.BitSet;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 @Getter
 public class AxisAlignedBoundingBoxCollider implements Collider {
+    static final int SHAPE_ORDINAL = CollisionDispatcher.ordinal(AxisAlignedBoundingBoxCollider.class);
 
     protected final World world;
     protected final ImmutableVector min;
@@ -70,92 +72,143 @@ public class AxisAlignedBoundingBoxCollider implements Collider {
         return min.add(max.subtract(min).multiply(0.5));
     }
 
+    @Override
+    public AxisAlignedBoundingBoxCollider getBoundingBox() {
+        return this;
+    }
+
     @Override
     public boolean contains(Vector vector) {
-        return vector.isInAABB(min, max);
+        return VectorMath.isInAABB(vector.getX(), vector.getY(), vector.getZ(),
+                min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
     }
 
-    private boolean intersects(AxisAlignedBoundingBoxCollider first, AxisAlignedBoundingBoxCollider second) {
-        return first.min.getX() <= second.max.getX()
-                && first.max.getX() >= second.min.getX()
-                && first.min.getY() <= second.max.getY()
-                && first.max.getY() >= second.min.getY()
-                && first.min.getZ() <= second.max.getZ()
-                && first.max.getZ() >= second.min.getZ();
+    @Override
+    public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return min.getX() <= maxX
+                && max.getX() >= minX
+                && min.getY() <= maxY
+                && max.getY() >= minY
+                && min.getZ() <= maxZ
+                && max.getZ() >= minZ;
+    }
+
+    /**
+     * Slab test of the center moving by delta against the other box grown by the half extents of this one.
+     */
+    public double sweep(Vector delta, AxisAlignedBoundingBoxCollider other) {
+        double length = delta.length();
+        if (length == 0) return this.intersects(other) ? 0 : -1;
+        ImmutableVector center = this.getCenter();
+        ImmutableVector halfExtents = this.getHalfExtents();
+        RayHit hit = RayHit.box(center.getX(), center.getY(), center.getZ(),
+                delta.getX() / length, delta.getY() / length, delta.getZ() / length, length,
+                other.min.getX() - halfExtents.getX(), other.min.getY() - halfExtents.getY(), other.min.getZ() - halfExtents.getZ(),
+                other.max.getX() + halfExtents.getX(), other.max.getY() + halfExtents.getY(), other.max.getZ() + halfExtents.getZ());
+        return hit == null ? -1 : hit.getDistance() / length;
+    }
+
+    public Optional<Contact> contact(AxisAlignedBoundingBoxCollider other) {
+        ImmutableVector center = this.getCenter();
+        ImmutableVector halfExtents = this.getHalfExtents();
+        ImmutableVector otherCenter = other.getCenter();
+        ImmutableVector otherExtents = other.getHalfExtents();
+        double dx = center.getX() - otherCenter.getX();
+        double dy = center.getY() - otherCenter.getY();
+        double dz = center.getZ() - otherCenter.getZ();
+        // Distance to push this box out on each axis, the overlap length is less when one box spans the other
+        double depthX = halfExtents.getX() + otherExtents.getX() - FastMath.abs(dx);
+        double depthY = halfExtents.getY() + otherExtents.getY() - FastMath.abs(dy);
+        double depthZ = halfExtents.getZ() + otherExtents.getZ() - FastMath.abs(dz);
+        if (depthX < 0 || depthY < 0 || depthZ < 0) return Optional.empty();
+        ImmutableVector normal;
+        double depth;
+        if (depthX <= depthY && depthX <= depthZ) {
+            depth = depthX;
+            normal = dx < 0 ? ImmutableVector.MINUS_I : ImmutableVector.PLUS_I;
+        } else if (depthY <= depthZ) {
+            depth = depthY;
+            normal = dy < 0 ? ImmutableVector.MINUS_J : ImmutableVector.PLUS_J;
+        } else {
+            depth = depthZ;
+            normal = dz < 0 ? ImmutableVector.MINUS_K : ImmutableVector.PLUS_K;
+        }
+        // Center of the overlapping box
+        ImmutableVector point = new ImmutableVector(
+                (FastMath.max(min.getX(), other.min.getX()) + FastMath.min(max.getX(), other.max.getX())) / 2,
+                (FastMath.max(min.getY(), other.min.getY()) + FastMath.min(max.getY(), other.max.getY())) / 2,
+                (FastMath.max(min.getZ(), other.min.getZ()) + FastMath.min(max.getZ(), other.max.getZ())) / 2);
+        return Optional.of(new Contact(depth, normal, point));
+    }
+
+    @Override
+    public Optional<RayHit> rayCast(Vector origin, Vector direction, double maxDistance) {
+        double length = direction.length();
+        if (length == 0) return Optional.empty();
+        return Optional.ofNullable(RayHit.box(origin.getX(), origin.getY(), origin.getZ(),
+                direction.getX() / length, direction.getY() / length, direction.getZ() / length, maxDistance,
+                min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ()));
     }
 
     @Override
     public boolean intersects(Collider other) {
-        World otherWorld = other.getWorld();
-        if (!otherWorld.equals(world)) return false;
-        if (other instanceof AxisAlignedBoundingBoxCollider aabb) {
-            return this.intersects(aabb, this) || this.intersects(this, aabb);
-        }
-        if (other instanceof SphereBoundingBoxCollider sphere) {
-            return sphere.intersects(this);
-        }
-        if (other instanceof OrientedBoundingBoxCollider obb) {
-            return obb.intersects(this);
-        }
-        if (other instanceof RayTraceCollider ray) {
-            return ray.intersects(this);
+        return CollisionDispatcher.intersects(this, other);
+    }
+
+    @Override
+    public BitSet intersectsMany(Collider[] others) {
+        if (!CollisionMetrics.isEnabled()) return this.intersectsEach(others);
+        long start = System.nanoTime();
+        BitSet result = this.intersectsEach(others);
+        CollisionMetrics.recordIntersectsMany(this, others, System.nanoTime() - start);
+        return result;
+    }
+
+    private BitSet intersectsEach(Collider[] others) {
+        BitSet result = new BitSet(others.length);
+        double minX = min.getX(), minY = min.getY(), minZ = min.getZ();
+        double maxX = max.getX(), maxY = max.getY(), maxZ = max.getZ();
+        for (int i = 0; i < others.length; i++) {
+            Collider other = others[i];
+            int ordinal = other.getShapeOrdinal();
+            boolean intersects;
+            if (ordinal == SHAPE_ORDINAL) {
+                AxisAlignedBoundingBoxCollider aabb = (AxisAlignedBoundingBoxCollider) other;
+                ImmutableVector otherMin = aabb.min;
+                ImmutableVector otherMax = aabb.max;
+                intersects = world.equals(aabb.world)
+                        && otherMin.getX() <= maxX && otherMax.getX() >= minX
+                        && otherMin.getY() <= maxY && otherMax.getY() >= minY
+                        && otherMin.getZ() <= maxZ && otherMax.getZ() >= minZ;
+            } else if (ordinal == SphereBoundingBoxCollider.SHAPE_ORDINAL) {
+                SphereBoundingBoxCollider sphere = (SphereBoundingBoxCollider) other;
+                intersects = world.equals(sphere.world) && sphere.intersects(minX, minY, minZ, maxX, maxY, maxZ);
+            } else if (ordinal == OrientedBoundingBoxCollider.SHAPE_ORDINAL) {
+                OrientedBoundingBoxCollider obb = (OrientedBoundingBoxCollider) other;
+                intersects = world.equals(obb.world) && obb.intersects(minX, minY, minZ, maxX, maxY, maxZ);
+            } else {
+                intersects = CollisionDispatcher.intersects(this, other);
+            }
+            if (intersects) result.set(i);
         }
-        return false;
+        return result;
     }
 
     @Override
     public AxisAlignedBoundingBoxCollider affectEntities(Consumer<Flux<Entity>> consumer) {
-        ImmutableVector vector = min.max(max);
-        consumer.accept(Mono.defer(() -> Mono.just(this.getCenter().toLocation(world)))
-                .publishOn(Atom.syncScheduler())
-                .flatMapMany(location -> Flux.fromIterable(location.getNearbyEntities(
-                        vector.getX(),
-                        vector.getY(),
-                        vector.getZ()
-                )))
-                .publishOn(Schedulers.boundedElastic())
-                .filter(entity -> this.intersects(Colliders.aabb(entity))));
+        consumer.accept(EntitySnapshotCache.entities(this));
         return this;
     }
 
     @Override
     public AxisAlignedBoundingBoxCollider affectBlocks(Consumer<Flux<Block>> consumer) {
-        this.affectLocations(flux ->
-                consumer.accept(flux
-                        .map(Location::getBlock)
-                        .filter(block -> {
-                            AxisAlignedBoundingBoxCollider aabb = Colliders.aabb(block);
-                            return aabb.intersects(this) || this.intersects(aabb);
-                        })));
+        consumer.accept(BlockShapeCache.blocks(this));
         return this;
     }
 
     @Override
     public AxisAlignedBoundingBoxCollider affectLocations(Consumer<Flux<Location>> consumer) {
-        ImmutableVector position = this.getCenter();
-        double maxExtent = getHalfExtents().maxComponent();
-        int radius = (int) (FastMath.ceil(maxExtent) + 1);
-        double originX = position.getX();
-        double originY = position.getY();
-        double originZ = position.getZ();
-        Sinks.Many<Tuple3<Double, Double, Double>> locations = Sinks.many().unicast().onBackpressureBuffer();
-        Flux<Tuple3<Double, Double, Double>> flux = locations.asFlux();
-        consumer.accept(flux
-                .publishOn(Schedulers.boundedElastic())
-                .map(tuple -> new ImmutableVector(tuple.getT1(), tuple.getT2(), tuple.getT3()))
-                .map(vector -> vector.toLocation(world).toCenterLocation())
-                .filter(location -> {
-                    Collider aabb = Colliders.BLOCK.apply(world).at(location);
-                    return aabb.intersects(this) || this.intersects(aabb);
-                }));
-        for (double x = originX - radius; x <= originX + radius; x++) {
-            for (double y = originY - radius; y <= originY + radius; y++) {
-                for (double z = originZ - radius; z <= originZ + radius; z++) {
-                    locations.tryEmitNext(Tuples.of(x, y, z));
-                }
-            }
-        }
-        locations.tryEmitComplete();
+        consumer.accept(VoxelIterator.locations(this));
         return this;
     }
 
@@ -164,6 +217,11 @@ public class AxisAlignedBoundingBoxCollider implements Collider {
         return this.world;
     }
 
+    @Override
+    public int getShapeOrdinal() {
+        return SHAPE_ORDINAL;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
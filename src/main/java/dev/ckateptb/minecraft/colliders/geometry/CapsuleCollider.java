@@ -0,0 +1,209 @@
+package dev.ckateptb.minecraft.colliders.geometry;
+
+import com.google.common.base.Objects;
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.dispatch.CollisionDispatcher;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.LerpUtil;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import dev.ckateptb.minecraft.colliders.math.VoxelIterator;
+import dev.ckateptb.minecraft.colliders.snapshot.BlockShapeCache;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshotCache;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.util.Vector;
+import reactor.core.publisher.Flux;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Points within the radius of the segment from start to end. Every test is a closed form segment distance,
+ * a round beam does not need the separating axis test of a box.
+ */
+@Getter
+public class CapsuleCollider implements Collider {
+    static final int SHAPE_ORDINAL = CollisionDispatcher.ordinal(CapsuleCollider.class);
+
+    protected final World world;
+    protected final ImmutableVector start;
+    protected final ImmutableVector end;
+    protected final double radius;
+    @Getter(AccessLevel.NONE)
+    private final double deltaX, deltaY, deltaZ;
+
+    public CapsuleCollider(World world, Vector start, Vector end, double radius) {
+        this.world = world;
+        this.start = ImmutableVector.of(start);
+        this.end = ImmutableVector.of(end);
+        this.radius = radius;
+        this.deltaX = end.getX() - start.getX();
+        this.deltaY = end.getY() - start.getY();
+        this.deltaZ = end.getZ() - start.getZ();
+    }
+
+    @Override
+    public CapsuleCollider at(Vector center) {
+        ImmutableVector offset = ImmutableVector.of(center).subtract(this.getCenter());
+        return new CapsuleCollider(world, start.add(offset), end.add(offset), radius);
+    }
+
+    @Override
+    public CapsuleCollider grow(Vector vector) {
+        return new CapsuleCollider(world, start, end, radius + FastMath.max(FastMath.max(vector.getX(), vector.getY()), vector.getZ()));
+    }
+
+    @Override
+    public CapsuleCollider scale(double amount) {
+        ImmutableVector center = this.getCenter();
+        return new CapsuleCollider(world, start.subtract(center).multiply(amount).add(center),
+                end.subtract(center).multiply(amount).add(center), radius * amount);
+    }
+
+    @Override
+    public ImmutableVector getHalfExtents() {
+        return new ImmutableVector(FastMath.abs(deltaX) / 2 + radius, FastMath.abs(deltaY) / 2 + radius, FastMath.abs(deltaZ) / 2 + radius);
+    }
+
+    public double getLength() {
+        return FastMath.sqrt(VectorMath.lengthSquared(deltaX, deltaY, deltaZ));
+    }
+
+    @Override
+    public boolean intersects(Collider other) {
+        return CollisionDispatcher.intersects(this, other);
+    }
+
+    public boolean intersectsSphere(double x, double y, double z, double radius) {
+        double radiusSum = this.radius + radius;
+        return VectorMath.distanceSquaredToSegment(x, y, z, start.getX(), start.getY(), start.getZ(),
+                deltaX, deltaY, deltaZ) <= radiusSum * radiusSum;
+    }
+
+    public boolean intersectsCapsule(CapsuleCollider other) {
+        double radiusSum = radius + other.radius;
+        return VectorMath.segmentDistanceSquared(start.getX(), start.getY(), start.getZ(), deltaX, deltaY, deltaZ,
+                other.start.getX(), other.start.getY(), other.start.getZ(), other.deltaX, other.deltaY, other.deltaZ) <= radiusSum * radiusSum;
+    }
+
+    /**
+     * Exact intersection with the axis aligned box given by its bounds, by the distance from the segment to the box.
+     */
+    @Override
+    public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return VectorMath.segmentDistanceSquaredToAABB(start.getX(), start.getY(), start.getZ(), deltaX, deltaY, deltaZ,
+                minX, minY, minZ, maxX, maxY, maxZ) <= radius * radius;
+    }
+
+    @Override
+    public boolean contains(Vector vector) {
+        return VectorMath.distanceSquaredToSegment(vector.getX(), vector.getY(), vector.getZ(),
+                start.getX(), start.getY(), start.getZ(), deltaX, deltaY, deltaZ) <= radius * radius;
+    }
+
+    /**
+     * Contact of the spheres around the closest points of both segments.
+     */
+    public Optional<Contact> contact(CapsuleCollider other) {
+        double s = VectorMath.closestSegmentParameter(start.getX(), start.getY(), start.getZ(), deltaX, deltaY, deltaZ,
+                other.start.getX(), other.start.getY(), other.start.getZ(), other.deltaX, other.deltaY, other.deltaZ);
+        ImmutableVector closest = this.pointAt(s);
+        return this.sphereAt(closest).contact(other.sphereAt(other.pointAt(other.closestParameter(closest))));
+    }
+
+    public Optional<Contact> contact(SphereBoundingBoxCollider other) {
+        return this.sphereAt(this.pointAt(this.closestParameter(other.getCenter()))).contact(other);
+    }
+
+    // Parameter (0 to 1) of the point of the segment closest to the vector
+    private double closestParameter(Vector vector) {
+        double lengthSquared = VectorMath.lengthSquared(deltaX, deltaY, deltaZ);
+        if (lengthSquared == 0) return 0;
+        return LerpUtil.clamp(VectorMath.dot(vector.getX() - start.getX(), vector.getY() - start.getY(), vector.getZ() - start.getZ(),
+                deltaX, deltaY, deltaZ) / lengthSquared, 0, 1);
+    }
+
+    private ImmutableVector pointAt(double t) {
+        return new ImmutableVector(start.getX() + deltaX * t, start.getY() + deltaY * t, start.getZ() + deltaZ * t);
+    }
+
+    private SphereBoundingBoxCollider sphereAt(ImmutableVector center) {
+        return new SphereBoundingBoxCollider(world, center, radius);
+    }
+
+    @Override
+    public Optional<RayHit> rayCast(Vector origin, Vector direction, double maxDistance) {
+        double length = direction.length();
+        if (length == 0) return Optional.empty();
+        return Optional.ofNullable(RayHit.capsule(origin.getX(), origin.getY(), origin.getZ(),
+                direction.getX() / length, direction.getY() / length, direction.getZ() / length, maxDistance,
+                start.getX(), start.getY(), start.getZ(), deltaX, deltaY, deltaZ, radius));
+    }
+
+    @Override
+    public CapsuleCollider affectEntities(Consumer<Flux<Entity>> consumer) {
+        consumer.accept(EntitySnapshotCache.entities(this));
+        return this;
+    }
+
+    /**
+     * Blocks are walked along the segment instead of the whole bounds when that visits fewer of them,
+     * see {@link VoxelIterator#forEachCandidate(Collider, java.util.function.LongConsumer)}.
+     */
+    @Override
+    public CapsuleCollider affectBlocks(Consumer<Flux<Block>> consumer) {
+        consumer.accept(BlockShapeCache.blocks(this));
+        return this;
+    }
+
+    @Override
+    public CapsuleCollider affectLocations(Consumer<Flux<Location>> consumer) {
+        consumer.accept(VoxelIterator.locations(this));
+        return this;
+    }
+
+    @Override
+    public AxisAlignedBoundingBoxCollider getBoundingBox() {
+        return Colliders.aabb(world,
+                new ImmutableVector(FastMath.min(start.getX(), end.getX()) - radius, FastMath.min(start.getY(), end.getY()) - radius, FastMath.min(start.getZ(), end.getZ()) - radius),
+                new ImmutableVector(FastMath.max(start.getX(), end.getX()) + radius, FastMath.max(start.getY(), end.getY()) + radius, FastMath.max(start.getZ(), end.getZ()) + radius));
+    }
+
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public int getShapeOrdinal() {
+        return SHAPE_ORDINAL;
+    }
+
+    @Override
+    public ImmutableVector getCenter() {
+        return new ImmutableVector(start.getX() + deltaX / 2, start.getY() + deltaY / 2, start.getZ() + deltaZ / 2);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CapsuleCollider that)) return false;
+        return Double.compare(that.radius, radius) == 0 && Objects.equal(world, that.world) && Objects.equal(start, that.start) && Objects.equal(end, that.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(world, start, end, radius);
+    }
+
+    @Override
+    public String toString() {
+        return "CapsuleCollider{" + "world=" + world.getName() + ", start=" + start + ", end=" + end + ", radius=" + radius + '}';
+    }
+}
@@ -1,8 +1,13 @@
 package dev.ckateptb.minecraft.colliders.geometry;
 
 import dev.ckateptb.minecraft.colliders.Collider;
-import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.dispatch.CollisionDispatcher;
 import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.VoxelIterator;
+import dev.ckateptb.minecraft.colliders.snapshot.BlockShapeCache;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshotCache;
+import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -11,57 +16,155 @@ import org.bukkit.util.Vector;
 import reactor.core.publisher.Flux;
 
 import java.util.Arrays;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Optional;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.stream.Stream;
 
+/**
+ * Collider intersected by what intersects any ({@link CombinedIntersectsMode#ANY}) or all ({@link CombinedIntersectsMode#ALL})
+ * of its children.
+ * <p>
+ * Bounds are computed once: the union of the child boxes, or the range every child box shares in {@code ALL} mode.
+ * Queries that cannot reach them are rejected before any child is tested.
+ * <p>
+ * Blocks and entities of children that are apart in {@code ANY} mode are walked per child, see {@link #isSpread()}.
+ */
 public class CombinedBoundingBoxCollider implements Collider {
+    private static final int SHAPE_ORDINAL = CollisionDispatcher.ordinal(CombinedBoundingBoxCollider.class);
+
     private final World world;
+    @Getter
     private final CombinedIntersectsMode mode;
     private final Collider[] colliders;
+    private final AxisAlignedBoundingBoxCollider bounds;
+    // In ALL mode min may exceed max on an axis where the children are apart, a box touching all of them spans that gap
+    private final double minX, minY, minZ, maxX, maxY, maxZ;
+    private final boolean spread;
 
     public CombinedBoundingBoxCollider(World world, CombinedIntersectsMode mode, Collider... colliders) {
         this.world = world;
         this.mode = mode;
         this.colliders = colliders;
+        boolean any = mode == CombinedIntersectsMode.ANY;
+        double minX = 0, minY = 0, minZ = 0, maxX = 0, maxY = 0, maxZ = 0;
+        double childVolume = 0;
+        for (int i = 0; i < colliders.length; i++) {
+            AxisAlignedBoundingBoxCollider box = colliders[i].getBoundingBox();
+            ImmutableVector min = box.getMin();
+            ImmutableVector max = box.getMax();
+            childVolume += blockVolume(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+            if (i == 0) {
+                minX = min.getX();
+                minY = min.getY();
+                minZ = min.getZ();
+                maxX = max.getX();
+                maxY = max.getY();
+                maxZ = max.getZ();
+            } else if (any) {
+                minX = FastMath.min(minX, min.getX());
+                minY = FastMath.min(minY, min.getY());
+                minZ = FastMath.min(minZ, min.getZ());
+                maxX = FastMath.max(maxX, max.getX());
+                maxY = FastMath.max(maxY, max.getY());
+                maxZ = FastMath.max(maxZ, max.getZ());
+            } else {
+                minX = FastMath.max(minX, min.getX());
+                minY = FastMath.max(minY, min.getY());
+                minZ = FastMath.max(minZ, min.getZ());
+                maxX = FastMath.min(maxX, max.getX());
+                maxY = FastMath.min(maxY, max.getY());
+                maxZ = FastMath.min(maxZ, max.getZ());
+            }
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.bounds = new AxisAlignedBoundingBoxCollider(world, new ImmutableVector(minX, minY, minZ), new ImmutableVector(maxX, maxY, maxZ));
+        this.spread = any && colliders.length > 1 && childVolume < blockVolume(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    // Blocks the range touches, a block is counted when any part of it is in the range
+    private static double blockVolume(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return (FastMath.floor(maxX) - FastMath.ceil(minX - 1) + 1)
+                * (FastMath.floor(maxY) - FastMath.ceil(minY - 1) + 1)
+                * (FastMath.floor(maxZ) - FastMath.ceil(minZ - 1) + 1);
     }
 
     @Override
     public CombinedBoundingBoxCollider at(Vector center) {
-        return new CombinedBoundingBoxCollider(world, mode, this.getColliders().map(collider ->
-                collider.at(center)).toArray(Collider[]::new));
+        Collider[] colliders = new Collider[this.colliders.length];
+        for (int i = 0; i < colliders.length; i++) {
+            colliders[i] = this.colliders[i].at(center);
+        }
+        return new CombinedBoundingBoxCollider(world, mode, colliders);
     }
 
     @Override
     public CombinedBoundingBoxCollider grow(Vector vector) {
-        Collider[] colliders = Arrays.stream(this.colliders).map(collider ->
-                collider.grow(vector)).toArray(Collider[]::new);
+        Collider[] colliders = new Collider[this.colliders.length];
+        for (int i = 0; i < colliders.length; i++) {
+            colliders[i] = this.colliders[i].grow(vector);
+        }
         return new CombinedBoundingBoxCollider(world, mode, colliders);
     }
 
     @Override
     public CombinedBoundingBoxCollider scale(double amount) {
-        return new CombinedBoundingBoxCollider(world, mode, this.getColliders().map(collider ->
-                collider.scale(amount)).toArray(Collider[]::new));
+        Collider[] colliders = new Collider[this.colliders.length];
+        for (int i = 0; i < colliders.length; i++) {
+            colliders[i] = this.colliders[i].scale(amount);
+        }
+        return new CombinedBoundingBoxCollider(world, mode, colliders);
     }
 
     @Override
     public ImmutableVector getHalfExtents() {
-        return this.getColliders().findFirst().map(Collider::getHalfExtents).orElse(ImmutableVector.ZERO);
+        return bounds.getHalfExtents();
+    }
+
+    @Override
+    public AxisAlignedBoundingBoxCollider getBoundingBox() {
+        return bounds;
     }
 
     @Override
     public boolean intersects(Collider other) {
-        return mode == CombinedIntersectsMode.ANY ? this.intersectsAny(other) : this.intersectsAll(other);
+        return CollisionDispatcher.intersects(this, other);
     }
 
     public boolean intersectsAny(Collider other) {
-        return this.getColliders().anyMatch(collider -> collider.intersects(other));
+        if (colliders.length == 0) return false;
+        if (mode == CombinedIntersectsMode.ANY && !other.intersects(minX, minY, minZ, maxX, maxY, maxZ)) return false;
+        for (Collider collider : colliders) {
+            if (collider.intersects(other)) return true;
+        }
+        return false;
     }
 
     public boolean intersectsAll(Collider other) {
-        return this.getColliders().allMatch(collider -> collider.intersects(other));
+        if (mode == CombinedIntersectsMode.ALL && colliders.length > 0) {
+            AxisAlignedBoundingBoxCollider box = other.getBoundingBox();
+            ImmutableVector min = box.getMin();
+            ImmutableVector max = box.getMax();
+            if (!this.reaches(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ())) return false;
+        }
+        for (Collider collider : colliders) {
+            if (!collider.intersects(other)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        boolean any = mode == CombinedIntersectsMode.ANY;
+        if (colliders.length > 0 && !this.reaches(minX, minY, minZ, maxX, maxY, maxZ)) return false;
+        for (Collider collider : colliders) {
+            if (collider.intersects(minX, minY, minZ, maxX, maxY, maxZ) == any) return any;
+        }
+        return !any;
     }
 
     @Override
@@ -70,76 +173,93 @@ public class CombinedBoundingBoxCollider implements Collider {
     }
 
     public boolean containsAny(Vector vector) {
-        return this.getColliders().anyMatch(collider -> collider.contains(vector));
+        for (Collider collider : colliders) {
+            if (collider.contains(vector)) return true;
+        }
+        return false;
     }
 
     public boolean containsAll(Vector vector) {
-        return this.getColliders().allMatch(collider -> collider.contains(vector));
+        for (Collider collider : colliders) {
+            if (!collider.contains(vector)) return false;
+        }
+        return true;
+    }
+
+    private boolean reaches(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return minX <= this.maxX && maxX >= this.minX && minY <= this.maxY && maxY >= this.minY && minZ <= this.maxZ && maxZ >= this.minZ;
+    }
+
+    /**
+     * In {@link CombinedIntersectsMode#ANY} mode this is the nearest hit of a child, with the exit distance of that child.
+     * In {@link CombinedIntersectsMode#ALL} mode the ray has to be inside every child, children are expected to be convex.
+     */
+    @Override
+    public Optional<RayHit> rayCast(Vector origin, Vector direction, double maxDistance) {
+        RayHit nearest = null;
+        double exit = maxDistance;
+        for (Collider collider : colliders) {
+            RayHit hit = collider.rayCast(origin, direction, maxDistance).orElse(null);
+            if (mode == CombinedIntersectsMode.ANY) {
+                if (hit != null && (nearest == null || hit.getDistance() < nearest.getDistance())) nearest = hit;
+                continue;
+            }
+            if (hit == null) return Optional.empty();
+            if (nearest == null || hit.getDistance() > nearest.getDistance()) nearest = hit;
+            exit = FastMath.min(exit, hit.getExitDistance());
+            if (nearest.getDistance() > exit) return Optional.empty();
+        }
+        if (nearest == null || mode == CombinedIntersectsMode.ANY) return Optional.ofNullable(nearest);
+        return Optional.of(new RayHit(nearest.getDistance(), exit, nearest.getPoint(), nearest.getNormal()));
     }
 
     @Override
     public CombinedBoundingBoxCollider affectEntities(Consumer<Flux<Entity>> consumer) {
-        consumer.accept(
-                this.applyFilter(
-                        Flux.fromArray(this.colliders)
-                                .flatMap(collider -> {
-                                    AtomicReference<Flux<Entity>> atomicReference = new AtomicReference<>();
-                                    collider.affectEntities(atomicReference::set);
-                                    return atomicReference.get();
-                                }),
-                        Colliders::aabb
-                )
-        );
+        consumer.accept(EntitySnapshotCache.entities(this));
         return this;
     }
 
     @Override
     public CombinedBoundingBoxCollider affectBlocks(Consumer<Flux<Block>> consumer) {
-        consumer.accept(
-                this.applyFilter(
-                        Flux.fromArray(this.colliders)
-                                .flatMap(collider -> {
-                                    AtomicReference<Flux<Block>> atomicReference = new AtomicReference<>();
-                                    collider.affectBlocks(atomicReference::set);
-                                    return atomicReference.get();
-                                })
-                        , Colliders::aabb
-                )
-        );
+        consumer.accept(BlockShapeCache.blocks(this));
         return this;
     }
 
     @Override
     public CombinedBoundingBoxCollider affectLocations(Consumer<Flux<Location>> consumer) {
-        consumer.accept(
-                this.applyFilter(
-                        Flux.fromArray(this.colliders)
-                                .flatMap(collider -> {
-                                    AtomicReference<Flux<Location>> atomicReference = new AtomicReference<>();
-                                    collider.affectLocations(atomicReference::set);
-                                    return atomicReference.get();
-                                }),
-                        Colliders::aabb
-                )
-        );
+        consumer.accept(VoxelIterator.locations(this));
         return this;
     }
 
-    private <T> Flux<T> applyFilter(Flux<T> flux, Function<T, Collider> getter) {
-        return flux.filter(t -> {
-            Collider aabb = getter.apply(t);
-            return mode == CombinedIntersectsMode.ANY || intersectsAll(aabb);
-        });
-    }
-
     @Override
     public World getWorld() {
         return world;
     }
 
+    @Override
+    public int getShapeOrdinal() {
+        return SHAPE_ORDINAL;
+    }
+
     @Override
     public ImmutableVector getCenter() {
-        return this.getColliders().findFirst().map(Collider::getCenter).orElse(ImmutableVector.ZERO);
+        return bounds.getCenter();
+    }
+
+    /**
+     * Whether the children of {@code ANY} mode fill less of the union bounds than the bounds themselves,
+     * then blocks and entities are walked within the bounds of each child and duplicates are dropped.
+     */
+    public boolean isSpread() {
+        return spread;
+    }
+
+    public int getColliderCount() {
+        return colliders.length;
+    }
+
+    public Collider getCollider(int index) {
+        return colliders[index];
     }
 
     public Stream<Collider> getColliders() {
@@ -0,0 +1,97 @@
+package dev.ckateptb.minecraft.colliders.geometry;
+
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.LerpUtil;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Overlap of two colliders. Moving the first collider by {@code normal * depth} separates them,
+ * the point is halfway between the deepest points of both colliders along the normal.
+ */
+@Getter
+public class Contact {
+    private final double depth;
+    private final ImmutableVector normal;
+    private final ImmutableVector point;
+
+    public Contact(double depth, ImmutableVector normal, ImmutableVector point) {
+        this.depth = depth;
+        this.normal = normal;
+        this.point = point;
+    }
+
+    public Contact negate() {
+        return new Contact(depth, normal.negative(), point);
+    }
+
+    // Sphere against a box given by its center, three unit axes (row by row) and half extents, the normal pushes the sphere out
+    static Contact sphereBox(double x, double y, double z, double radius,
+                             double centerX, double centerY, double centerZ, double[] axes,
+                             double extentX, double extentY, double extentZ) {
+        double relativeX = x - centerX;
+        double relativeY = y - centerY;
+        double relativeZ = z - centerZ;
+        // Center of the sphere in the frame of the box and the closest point of the box to it
+        double localX = VectorMath.dot(relativeX, relativeY, relativeZ, axes[0], axes[1], axes[2]);
+        double localY = VectorMath.dot(relativeX, relativeY, relativeZ, axes[3], axes[4], axes[5]);
+        double localZ = VectorMath.dot(relativeX, relativeY, relativeZ, axes[6], axes[7], axes[8]);
+        double clampedX = LerpUtil.clamp(localX, -extentX, extentX);
+        double clampedY = LerpUtil.clamp(localY, -extentY, extentY);
+        double clampedZ = LerpUtil.clamp(localZ, -extentZ, extentZ);
+        double offsetX = localX - clampedX;
+        double offsetY = localY - clampedY;
+        double offsetZ = localZ - clampedZ;
+        double distanceSquared = VectorMath.lengthSquared(offsetX, offsetY, offsetZ);
+        if (distanceSquared > radius * radius) return null;
+        double normalX, normalY, normalZ;
+        double depth;
+        if (distanceSquared > 0) {
+            double distance = FastMath.sqrt(distanceSquared);
+            normalX = (axes[0] * offsetX + axes[3] * offsetY + axes[6] * offsetZ) / distance;
+            normalY = (axes[1] * offsetX + axes[4] * offsetY + axes[7] * offsetZ) / distance;
+            normalZ = (axes[2] * offsetX + axes[5] * offsetY + axes[8] * offsetZ) / distance;
+            depth = radius - distance;
+        } else {
+            // The center is inside, push it out through the nearest face
+            double distanceX = extentX - FastMath.abs(localX);
+            double distanceY = extentY - FastMath.abs(localY);
+            double distanceZ = extentZ - FastMath.abs(localZ);
+            int nearest = distanceX <= distanceY && distanceX <= distanceZ ? 0 : distanceY <= distanceZ ? 1 : 2;
+            double sign;
+            double nearestDistance;
+            if (nearest == 0) {
+                sign = localX < 0 ? -1 : 1;
+                clampedX = sign * extentX;
+                nearestDistance = distanceX;
+            } else if (nearest == 1) {
+                sign = localY < 0 ? -1 : 1;
+                clampedY = sign * extentY;
+                nearestDistance = distanceY;
+            } else {
+                sign = localZ < 0 ? -1 : 1;
+                clampedZ = sign * extentZ;
+                nearestDistance = distanceZ;
+            }
+            normalX = axes[nearest * 3] * sign;
+            normalY = axes[nearest * 3 + 1] * sign;
+            normalZ = axes[nearest * 3 + 2] * sign;
+            depth = radius + nearestDistance;
+        }
+        // Point of the box surface
+        double surfaceX = centerX + axes[0] * clampedX + axes[3] * clampedY + axes[6] * clampedZ;
+        double surfaceY = centerY + axes[1] * clampedX + axes[4] * clampedY + axes[7] * clampedZ;
+        double surfaceZ = centerZ + axes[2] * clampedX + axes[5] * clampedY + axes[8] * clampedZ;
+        ImmutableVector point = new ImmutableVector(
+                (x - normalX * radius + surfaceX) / 2,
+                (y - normalY * radius + surfaceY) / 2,
+                (z - normalZ * radius + surfaceZ) / 2);
+        return new Contact(depth, new ImmutableVector(normalX, normalY, normalZ), point);
+    }
+
+    @Override
+    public String toString() {
+        return "Contact{" + "depth=" + depth + ", normal=" + normal + ", point=" + point + '}';
+    }
+}
@@ -3,8 +3,15 @@ package dev.ckateptb.minecraft.colliders.geometry;
 import com.google.common.base.Objects;
 import dev.ckateptb.minecraft.colliders.Collider;
 import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.dispatch.CollisionDispatcher;
 import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
 import dev.ckateptb.minecraft.colliders.math.LerpUtil;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import dev.ckateptb.minecraft.colliders.math.VoxelIterator;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import dev.ckateptb.minecraft.colliders.snapshot.BlockShapeCache;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshotCache;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.apache.commons.math3.util.FastMath;
 import org.bukkit.Location;
@@ -15,11 +22,17 @@ import org.bukkit.util.EulerAngle;
 import org.bukkit.util.Vector;
 import reactor.core.publisher.Flux;
 
+import java.util.BitSet;
+import java.util.Optional;
 import java.util.function.Consumer;
-import java.util.function.Function;
 
 @Getter
 public class OrientedBoundingBoxCollider implements Collider {
+    static final int SHAPE_ORDINAL = CollisionDispatcher.ordinal(OrientedBoundingBoxCollider.class);
+    static final double[] WORLD_AXES = {1, 0, 0, 0, 1, 0, 0, 0, 1};
+    // Guards the cross product axes against near parallel edges, whose cross product is close to zero
+    private static final double EPSILON = 1e-6;
+
     protected final World world;
     protected final ImmutableVector center;
     protected final EulerAngle rotation;
@@ -27,19 +40,21 @@ public class OrientedBoundingBoxCollider implements Collider {
     protected final ImmutableVector up;
     protected final ImmutableVector forward;
     protected final ImmutableVector halfExtents;
+    // Primitive copies of the axes and absolute half extents, so SAT does not touch vectors at all
+    @Getter(AccessLevel.NONE)
+    private final double rightX, rightY, rightZ, upX, upY, upZ, forwardX, forwardY, forwardZ;
+    @Getter(AccessLevel.NONE)
+    private final double extentX, extentY, extentZ;
+    // The same axes row by row for the sweep, contact and ray tests, shared and never modified
+    @Getter(AccessLevel.NONE)
+    private final double[] axes;
 
     private OrientedBoundingBoxCollider(OrientedBoundingBoxCollider obb, ImmutableVector center) {
         this(obb, center, obb.halfExtents);
     }
 
     private OrientedBoundingBoxCollider(OrientedBoundingBoxCollider obb, ImmutableVector center, ImmutableVector halfExtents) {
-        this.world = obb.world;
-        this.center = center;
-        this.rotation = obb.rotation;
-        this.right = obb.right;
-        this.up = obb.up;
-        this.forward = obb.forward;
-        this.halfExtents = halfExtents;
+        this(obb.world, center, obb.rotation, obb.right, obb.up, obb.forward, halfExtents);
     }
 
     public OrientedBoundingBoxCollider(AxisAlignedBoundingBoxCollider aabb, EulerAngle eulerAngle) {
@@ -47,13 +62,40 @@ public class OrientedBoundingBoxCollider implements Collider {
     }
 
     public OrientedBoundingBoxCollider(World world, ImmutableVector center, ImmutableVector halfExtents, EulerAngle eulerAngle) {
+        this(world, center, eulerAngle.setZ(0), halfExtents); // Roll is not implement now
+    }
+
+    private OrientedBoundingBoxCollider(World world, ImmutableVector center, EulerAngle rotation, ImmutableVector halfExtents) {
+        this(world, center, rotation,
+                ImmutableVector.PLUS_I.rotate(rotation),
+                ImmutableVector.PLUS_J.rotate(rotation),
+                ImmutableVector.PLUS_K.rotate(rotation),
+                halfExtents);
+    }
+
+    private OrientedBoundingBoxCollider(World world, ImmutableVector center, EulerAngle rotation,
+                                        ImmutableVector right, ImmutableVector up, ImmutableVector forward,
+                                        ImmutableVector halfExtents) {
         this.world = world;
         this.center = center;
-        this.rotation = eulerAngle.setZ(0); // Roll is not implement now
-        this.right = ImmutableVector.PLUS_I.rotate(this.rotation);
-        this.up = ImmutableVector.PLUS_J.rotate(this.rotation);
-        this.forward = ImmutableVector.PLUS_K.rotate(this.rotation);
+        this.rotation = rotation;
+        this.right = right;
+        this.up = up;
+        this.forward = forward;
         this.halfExtents = halfExtents;
+        this.rightX = right.getX();
+        this.rightY = right.getY();
+        this.rightZ = right.getZ();
+        this.upX = up.getX();
+        this.upY = up.getY();
+        this.upZ = up.getZ();
+        this.forwardX = forward.getX();
+        this.forwardY = forward.getY();
+        this.forwardZ = forward.getZ();
+        this.extentX = FastMath.abs(halfExtents.getX());
+        this.extentY = FastMath.abs(halfExtents.getY());
+        this.extentZ = FastMath.abs(halfExtents.getZ());
+        this.axes = new double[]{rightX, rightY, rightZ, upX, upY, upZ, forwardX, forwardY, forwardZ};
     }
 
     @Override
@@ -62,78 +104,352 @@ public class OrientedBoundingBoxCollider implements Collider {
     }
 
     public ImmutableVector getClosestPosition(ImmutableVector target) {
-        ImmutableVector destination = target.subtract(center);
-        ImmutableVector closest = center;
-        for (int i = 0; i < 3; i++) {
-            ImmutableVector axis = switch (i) {
-                case 0 -> right;
-                case 1 -> up;
-                case 2 -> forward;
-                default -> throw new IllegalStateException("Unexpected value: " + i);
-            };
-            double halfComponent = halfExtents.getComponent(i);
-            double dist = LerpUtil.clamp(destination.dot(axis), -halfComponent, halfComponent);
-            closest = closest.add(axis.multiply(dist));
-        }
-        return closest;
+        double dx = target.getX() - center.getX();
+        double dy = target.getY() - center.getY();
+        double dz = target.getZ() - center.getZ();
+        double distRight = this.clampedProjection(0, dx, dy, dz);
+        double distUp = this.clampedProjection(1, dx, dy, dz);
+        double distForward = this.clampedProjection(2, dx, dy, dz);
+        return new ImmutableVector(
+                center.getX() + right.getX() * distRight + up.getX() * distUp + forward.getX() * distForward,
+                center.getY() + right.getY() * distRight + up.getY() * distUp + forward.getY() * distForward,
+                center.getZ() + right.getZ() * distRight + up.getZ() * distUp + forward.getZ() * distForward
+        );
+    }
+
+    private double distanceSquaredToClosest(double x, double y, double z) {
+        double dx = x - center.getX();
+        double dy = y - center.getY();
+        double dz = z - center.getZ();
+        double distRight = this.clampedProjection(0, dx, dy, dz);
+        double distUp = this.clampedProjection(1, dx, dy, dz);
+        double distForward = this.clampedProjection(2, dx, dy, dz);
+        // Offset from the closest position to the target
+        double ox = dx - right.getX() * distRight - up.getX() * distUp - forward.getX() * distForward;
+        double oy = dy - right.getY() * distRight - up.getY() * distUp - forward.getY() * distForward;
+        double oz = dz - right.getZ() * distRight - up.getZ() * distUp - forward.getZ() * distForward;
+        return VectorMath.lengthSquared(ox, oy, oz);
+    }
+
+    private double clampedProjection(int index, double dx, double dy, double dz) {
+        ImmutableVector axis = getAxis(index, right, up, forward);
+        double halfComponent = halfExtents.getComponent(index);
+        return LerpUtil.clamp(VectorMath.dot(dx, dy, dz, axis.getX(), axis.getY(), axis.getZ()), -halfComponent, halfComponent);
     }
 
     @Override
     public boolean intersects(Collider other) {
-        World otherWorld = other.getWorld();
-        if (!otherWorld.equals(world)) return false;
-        if (other instanceof OrientedBoundingBoxCollider obb) {
-            ImmutableVector centerDifference = obb.center.subtract(this.center);
-            for (int i = 0; i < 15; i++) {
-                ImmutableVector current = this.getByIndex(i, obb);
-                if (projectionOnAxis(centerDifference, current) >
-                        projectionOnAxis(this.right.multiply(this.halfExtents.getX()), current) +
-                                projectionOnAxis(this.up.multiply(this.halfExtents.getY()), current) +
-                                projectionOnAxis(this.forward.multiply(this.halfExtents.getZ()), current) +
-                                projectionOnAxis(obb.right.multiply(obb.halfExtents.getX()), current) +
-                                projectionOnAxis(obb.up.multiply(obb.halfExtents.getY()), current) +
-                                projectionOnAxis(obb.forward.multiply(obb.halfExtents.getZ()), current)) {
-                    return false;
-                }
+        return CollisionDispatcher.intersects(this, other);
+    }
+
+    @Override
+    public BitSet intersectsMany(Collider[] others) {
+        if (!CollisionMetrics.isEnabled()) return this.intersectsEach(others);
+        long start = System.nanoTime();
+        BitSet result = this.intersectsEach(others);
+        CollisionMetrics.recordIntersectsMany(this, others, System.nanoTime() - start);
+        return result;
+    }
+
+    private BitSet intersectsEach(Collider[] others) {
+        BitSet result = new BitSet(others.length);
+        // World bounds of this box reject most candidates before the separating axis test
+        AxisAlignedBoundingBoxCollider bounds = this.getBoundingBox();
+        ImmutableVector boundsMin = bounds.min;
+        ImmutableVector boundsMax = bounds.max;
+        for (int i = 0; i < others.length; i++) {
+            Collider other = others[i];
+            int ordinal = other.getShapeOrdinal();
+            boolean intersects;
+            if (ordinal == AxisAlignedBoundingBoxCollider.SHAPE_ORDINAL) {
+                AxisAlignedBoundingBoxCollider aabb = (AxisAlignedBoundingBoxCollider) other;
+                ImmutableVector min = aabb.min;
+                ImmutableVector max = aabb.max;
+                intersects = world.equals(aabb.world)
+                        && bounds.intersects(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ())
+                        && this.intersects(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+            } else if (ordinal == SphereBoundingBoxCollider.SHAPE_ORDINAL) {
+                SphereBoundingBoxCollider sphere = (SphereBoundingBoxCollider) other;
+                ImmutableVector sphereCenter = sphere.center;
+                double radius = sphere.radius;
+                intersects = world.equals(sphere.world)
+                        && VectorMath.distanceSquaredToAABB(sphereCenter.getX(), sphereCenter.getY(), sphereCenter.getZ(),
+                        boundsMin.getX(), boundsMin.getY(), boundsMin.getZ(),
+                        boundsMax.getX(), boundsMax.getY(), boundsMax.getZ()) <= radius * radius
+                        && this.intersectsSphere(sphereCenter.getX(), sphereCenter.getY(), sphereCenter.getZ(), radius);
+            } else if (ordinal == SHAPE_ORDINAL) {
+                OrientedBoundingBoxCollider obb = (OrientedBoundingBoxCollider) other;
+                intersects = world.equals(obb.world) && this.intersectsOBB(obb);
+            } else {
+                intersects = CollisionDispatcher.intersects(this, other);
             }
-            return true;
+            if (intersects) result.set(i);
         }
-        if (other instanceof AxisAlignedBoundingBoxCollider aabb) {
-            return this.intersects(new OrientedBoundingBoxCollider(aabb, EulerAngle.ZERO))
-                    && aabb.contains(this.getClosestPosition(aabb.getCenter()));
+        return result;
+    }
+
+    public boolean intersectsSphere(double x, double y, double z, double radius) {
+        return this.distanceSquaredToClosest(x, y, z) <= radius * radius;
+    }
+
+    /**
+     * Exact intersection with the capsule around the segment from start to end,
+     * the segment is moved into the frame of this box and measured against its extents.
+     */
+    public boolean intersectsCapsule(double startX, double startY, double startZ,
+                                     double endX, double endY, double endZ, double radius) {
+        double dx = startX - center.getX();
+        double dy = startY - center.getY();
+        double dz = startZ - center.getZ();
+        double deltaX = endX - startX;
+        double deltaY = endY - startY;
+        double deltaZ = endZ - startZ;
+        return VectorMath.segmentDistanceSquaredToAABB(
+                VectorMath.dot(dx, dy, dz, rightX, rightY, rightZ),
+                VectorMath.dot(dx, dy, dz, upX, upY, upZ),
+                VectorMath.dot(dx, dy, dz, forwardX, forwardY, forwardZ),
+                VectorMath.dot(deltaX, deltaY, deltaZ, rightX, rightY, rightZ),
+                VectorMath.dot(deltaX, deltaY, deltaZ, upX, upY, upZ),
+                VectorMath.dot(deltaX, deltaY, deltaZ, forwardX, forwardY, forwardZ),
+                -extentX, -extentY, -extentZ, extentX, extentY, extentZ) <= radius * radius;
+    }
+
+    public boolean intersectsOBB(OrientedBoundingBoxCollider other) {
+        // Rotation of the other box expressed in the frame of this box
+        double r00 = VectorMath.dot(rightX, rightY, rightZ, other.rightX, other.rightY, other.rightZ);
+        double r01 = VectorMath.dot(rightX, rightY, rightZ, other.upX, other.upY, other.upZ);
+        double r02 = VectorMath.dot(rightX, rightY, rightZ, other.forwardX, other.forwardY, other.forwardZ);
+        double r10 = VectorMath.dot(upX, upY, upZ, other.rightX, other.rightY, other.rightZ);
+        double r11 = VectorMath.dot(upX, upY, upZ, other.upX, other.upY, other.upZ);
+        double r12 = VectorMath.dot(upX, upY, upZ, other.forwardX, other.forwardY, other.forwardZ);
+        double r20 = VectorMath.dot(forwardX, forwardY, forwardZ, other.rightX, other.rightY, other.rightZ);
+        double r21 = VectorMath.dot(forwardX, forwardY, forwardZ, other.upX, other.upY, other.upZ);
+        double r22 = VectorMath.dot(forwardX, forwardY, forwardZ, other.forwardX, other.forwardY, other.forwardZ);
+        // Translation between centers expressed in the frame of this box
+        double dx = other.center.getX() - center.getX();
+        double dy = other.center.getY() - center.getY();
+        double dz = other.center.getZ() - center.getZ();
+        double t0 = VectorMath.dot(dx, dy, dz, rightX, rightY, rightZ);
+        double t1 = VectorMath.dot(dx, dy, dz, upX, upY, upZ);
+        double t2 = VectorMath.dot(dx, dy, dz, forwardX, forwardY, forwardZ);
+        return intersects(r00, r01, r02, r10, r11, r12, r20, r21, r22, t0, t1, t2,
+                extentX, extentY, extentZ, other.extentX, other.extentY, other.extentZ);
+    }
+
+    /**
+     * Exact intersection with the axis aligned box given by its bounds.
+     * The box axes are the world axes, so no rotation is computed for it.
+     */
+    @Override
+    public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double ex = (maxX - minX) * 0.5;
+        double ey = (maxY - minY) * 0.5;
+        double ez = (maxZ - minZ) * 0.5;
+        // In the frame of the box the rotation matrix is just the components of this box axes
+        return intersects(rightX, upX, forwardX, rightY, upY, forwardY, rightZ, upZ, forwardZ,
+                center.getX() - (minX + ex), center.getY() - (minY + ey), center.getZ() - (minZ + ez),
+                ex, ey, ez, extentX, extentY, extentZ);
+    }
+
+    public double sweep(Vector delta, OrientedBoundingBoxCollider other) {
+        return this.sweep(delta, other.center.getX(), other.center.getY(), other.center.getZ(), other.axes,
+                other.extentX, other.extentY, other.extentZ);
+    }
+
+    public double sweep(Vector delta, AxisAlignedBoundingBoxCollider other) {
+        ImmutableVector otherCenter = other.getCenter();
+        ImmutableVector otherExtents = other.getHalfExtents();
+        return this.sweep(delta, otherCenter.getX(), otherCenter.getY(), otherCenter.getZ(), WORLD_AXES,
+                otherExtents.getX(), otherExtents.getY(), otherExtents.getZ());
+    }
+
+    // Swept separating axis test: on every axis of the static test the projections overlap during a time window,
+    // the boxes touch first at the latest window start if it is before the earliest window end
+    private double sweep(Vector delta, double centerX, double centerY, double centerZ, double[] axes,
+                         double otherExtentX, double otherExtentY, double otherExtentZ) {
+        double[] own = this.axes;
+        double dx = centerX - center.getX();
+        double dy = centerY - center.getY();
+        double dz = centerZ - center.getZ();
+        double deltaX = delta.getX();
+        double deltaY = delta.getY();
+        double deltaZ = delta.getZ();
+        double start = 0;
+        double end = 1;
+        for (int i = 0; i < 15; i++) {
+            double lx, ly, lz;
+            if (i < 6) {
+                double[] source = i < 3 ? own : axes;
+                int offset = (i % 3) * 3;
+                lx = source[offset];
+                ly = source[offset + 1];
+                lz = source[offset + 2];
+            } else {
+                int a = (i - 6) / 3 * 3;
+                int b = (i - 6) % 3 * 3;
+                lx = own[a + 1] * axes[b + 2] - own[a + 2] * axes[b + 1];
+                ly = own[a + 2] * axes[b] - own[a] * axes[b + 2];
+                lz = own[a] * axes[b + 1] - own[a + 1] * axes[b];
+                // Parallel edges give no axis, the face axes already cover them
+                if (VectorMath.lengthSquared(lx, ly, lz) < EPSILON) continue;
+            }
+            double radius = this.projectedRadius(lx, ly, lz, axes, otherExtentX, otherExtentY, otherExtentZ);
+            double separation = VectorMath.dot(dx, dy, dz, lx, ly, lz);
+            double velocity = VectorMath.dot(deltaX, deltaY, deltaZ, lx, ly, lz);
+            if (velocity == 0) {
+                if (FastMath.abs(separation) > radius) return -1;
+                continue;
+            }
+            double enter = (separation - radius) / velocity;
+            double exit = (separation + radius) / velocity;
+            start = FastMath.max(start, FastMath.min(enter, exit));
+            end = FastMath.min(end, FastMath.max(enter, exit));
+            if (start > end) return -1;
         }
-        if (other instanceof SphereBoundingBoxCollider sphere) {
-            ImmutableVector distance = sphere.center.subtract(getClosestPosition(sphere.center));
-            return distance.dot(distance) <= sphere.radius * sphere.radius;
+        return start;
+    }
+
+    public Optional<Contact> contact(OrientedBoundingBoxCollider other) {
+        return this.contact(other.center.getX(), other.center.getY(), other.center.getZ(), other.axes,
+                other.extentX, other.extentY, other.extentZ);
+    }
+
+    public Optional<Contact> contact(AxisAlignedBoundingBoxCollider other) {
+        ImmutableVector otherCenter = other.getCenter();
+        ImmutableVector otherExtents = other.getHalfExtents();
+        return this.contact(otherCenter.getX(), otherCenter.getY(), otherCenter.getZ(), WORLD_AXES,
+                otherExtents.getX(), otherExtents.getY(), otherExtents.getZ());
+    }
+
+    // Separating axis test that keeps the axis of least overlap, pushing this box along it separates the boxes
+    private Optional<Contact> contact(double centerX, double centerY, double centerZ, double[] axes,
+                                      double otherExtentX, double otherExtentY, double otherExtentZ) {
+        double[] own = this.axes;
+        double dx = centerX - center.getX();
+        double dy = centerY - center.getY();
+        double dz = centerZ - center.getZ();
+        double depth = Double.POSITIVE_INFINITY;
+        double normalX = 0, normalY = 0, normalZ = 0;
+        for (int i = 0; i < 15; i++) {
+            double lx, ly, lz;
+            if (i < 6) {
+                double[] source = i < 3 ? own : axes;
+                int offset = (i % 3) * 3;
+                lx = source[offset];
+                ly = source[offset + 1];
+                lz = source[offset + 2];
+            } else {
+                int a = (i - 6) / 3 * 3;
+                int b = (i - 6) % 3 * 3;
+                lx = own[a + 1] * axes[b + 2] - own[a + 2] * axes[b + 1];
+                ly = own[a + 2] * axes[b] - own[a] * axes[b + 2];
+                lz = own[a] * axes[b + 1] - own[a + 1] * axes[b];
+                double lengthSquared = VectorMath.lengthSquared(lx, ly, lz);
+                if (lengthSquared < EPSILON) continue;
+                double length = FastMath.sqrt(lengthSquared);
+                lx /= length;
+                ly /= length;
+                lz /= length;
+            }
+            double separation = VectorMath.dot(dx, dy, dz, lx, ly, lz);
+            double overlap = this.projectedRadius(lx, ly, lz, axes, otherExtentX, otherExtentY, otherExtentZ) - FastMath.abs(separation);
+            if (overlap < 0) return Optional.empty();
+            if (overlap < depth) {
+                double sign = separation > 0 ? -1 : 1;
+                depth = overlap;
+                normalX = lx * sign;
+                normalY = ly * sign;
+                normalZ = lz * sign;
+            }
         }
-        if (other instanceof RayTraceCollider ray) {
-            return ray.intersects(this);
+        // Deepest corners of both boxes along the normal
+        double pointX = center.getX() + centerX;
+        double pointY = center.getY() + centerY;
+        double pointZ = center.getZ() + centerZ;
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = axis == 0 ? extentX : axis == 1 ? extentY : extentZ;
+            double otherExtent = axis == 0 ? otherExtentX : axis == 1 ? otherExtentY : otherExtentZ;
+            int offset = axis * 3;
+            double ownSide = -FastMath.signum(VectorMath.dot(own[offset], own[offset + 1], own[offset + 2], normalX, normalY, normalZ)) * extent;
+            double otherSide = FastMath.signum(VectorMath.dot(axes[offset], axes[offset + 1], axes[offset + 2], normalX, normalY, normalZ)) * otherExtent;
+            pointX += own[offset] * ownSide + axes[offset] * otherSide;
+            pointY += own[offset + 1] * ownSide + axes[offset + 1] * otherSide;
+            pointZ += own[offset + 2] * ownSide + axes[offset + 2] * otherSide;
         }
-        return false;
-    }
-
-    private double projectionOnAxis(Vector vector, Vector vector2) {
-        return FastMath.abs(vector.dot(vector2));
-    }
-
-    private ImmutableVector getByIndex(int n, OrientedBoundingBoxCollider other) {
-        return switch (n) {
-            case 0 -> this.right;
-            case 1 -> this.up;
-            case 2 -> this.forward;
-            case 3 -> other.right;
-            case 4 -> other.up;
-            case 5 -> other.forward;
-            case 6 -> this.right.getCrossProduct(other.right);
-            case 7 -> this.right.getCrossProduct(other.up);
-            case 8 -> this.right.getCrossProduct(other.forward);
-            case 9 -> this.up.getCrossProduct(other.right);
-            case 10 -> this.up.getCrossProduct(other.up);
-            case 11 -> this.up.getCrossProduct(other.forward);
-            case 12 -> this.forward.getCrossProduct(other.right);
-            case 13 -> this.forward.getCrossProduct(other.up);
-            case 14 -> this.forward.getCrossProduct(other.forward);
-            default -> throw new IllegalStateException("Unexpected value: " + n);
+        return Optional.of(new Contact(depth, new ImmutableVector(normalX, normalY, normalZ),
+                new ImmutableVector(pointX / 2, pointY / 2, pointZ / 2)));
+    }
+
+    Contact sphereContact(double x, double y, double z, double radius) {
+        return Contact.sphereBox(x, y, z, radius, center.getX(), center.getY(), center.getZ(), this.axes, extentX, extentY, extentZ);
+    }
+
+    private double projectedRadius(double lx, double ly, double lz, double[] axes,
+                                   double otherExtentX, double otherExtentY, double otherExtentZ) {
+        return extentX * FastMath.abs(VectorMath.dot(rightX, rightY, rightZ, lx, ly, lz))
+                + extentY * FastMath.abs(VectorMath.dot(upX, upY, upZ, lx, ly, lz))
+                + extentZ * FastMath.abs(VectorMath.dot(forwardX, forwardY, forwardZ, lx, ly, lz))
+                + otherExtentX * FastMath.abs(VectorMath.dot(axes[0], axes[1], axes[2], lx, ly, lz))
+                + otherExtentY * FastMath.abs(VectorMath.dot(axes[3], axes[4], axes[5], lx, ly, lz))
+                + otherExtentZ * FastMath.abs(VectorMath.dot(axes[6], axes[7], axes[8], lx, ly, lz));
+    }
+
+    @Override
+    public Optional<RayHit> rayCast(Vector origin, Vector direction, double maxDistance) {
+        double length = direction.length();
+        if (length == 0) return Optional.empty();
+        return Optional.ofNullable(RayHit.box(origin.getX(), origin.getY(), origin.getZ(),
+                direction.getX() / length, direction.getY() / length, direction.getZ() / length, maxDistance,
+                center.getX(), center.getY(), center.getZ(), this.axes,
+                extentX, extentY, extentZ));
+    }
+
+    // Separating axis test of box B against box A in the frame of A, see Ericson "Real-Time Collision Detection" 4.4.1
+    // r is the rotation of B in the frame of A, t is the translation from A to B, e and o are half extents of A and B
+    private static boolean intersects(double r00, double r01, double r02,
+                                      double r10, double r11, double r12,
+                                      double r20, double r21, double r22,
+                                      double t0, double t1, double t2,
+                                      double ex, double ey, double ez,
+                                      double ox, double oy, double oz) {
+        double a00 = FastMath.abs(r00) + EPSILON;
+        double a01 = FastMath.abs(r01) + EPSILON;
+        double a02 = FastMath.abs(r02) + EPSILON;
+        double a10 = FastMath.abs(r10) + EPSILON;
+        double a11 = FastMath.abs(r11) + EPSILON;
+        double a12 = FastMath.abs(r12) + EPSILON;
+        double a20 = FastMath.abs(r20) + EPSILON;
+        double a21 = FastMath.abs(r21) + EPSILON;
+        double a22 = FastMath.abs(r22) + EPSILON;
+
+        // Axes of A
+        if (FastMath.abs(t0) > ex + ox * a00 + oy * a01 + oz * a02) return false;
+        if (FastMath.abs(t1) > ey + ox * a10 + oy * a11 + oz * a12) return false;
+        if (FastMath.abs(t2) > ez + ox * a20 + oy * a21 + oz * a22) return false;
+
+        // Axes of B
+        if (FastMath.abs(t0 * r00 + t1 * r10 + t2 * r20) > ex * a00 + ey * a10 + ez * a20 + ox) return false;
+        if (FastMath.abs(t0 * r01 + t1 * r11 + t2 * r21) > ex * a01 + ey * a11 + ez * a21 + oy) return false;
+        if (FastMath.abs(t0 * r02 + t1 * r12 + t2 * r22) > ex * a02 + ey * a12 + ez * a22 + oz) return false;
+
+        // Cross products of the axes of A and B
+        if (FastMath.abs(t2 * r10 - t1 * r20) > ey * a20 + ez * a10 + oy * a02 + oz * a01) return false;
+        if (FastMath.abs(t2 * r11 - t1 * r21) > ey * a21 + ez * a11 + ox * a02 + oz * a00) return false;
+        if (FastMath.abs(t2 * r12 - t1 * r22) > ey * a22 + ez * a12 + ox * a01 + oy * a00) return false;
+        if (FastMath.abs(t0 * r20 - t2 * r00) > ex * a20 + ez * a00 + oy * a12 + oz * a11) return false;
+        if (FastMath.abs(t0 * r21 - t2 * r01) > ex * a21 + ez * a01 + ox * a12 + oz * a10) return false;
+        if (FastMath.abs(t0 * r22 - t2 * r02) > ex * a22 + ez * a02 + ox * a11 + oy * a10) return false;
+        if (FastMath.abs(t1 * r00 - t0 * r10) > ex * a10 + ey * a00 + oy * a22 + oz * a21) return false;
+        if (FastMath.abs(t1 * r01 - t0 * r11) > ex * a11 + ey * a01 + ox * a22 + oz * a20) return false;
+        return FastMath.abs(t1 * r02 - t0 * r12) <= ex * a12 + ey * a02 + ox * a21 + oy * a20;
+    }
+
+    private static ImmutableVector getAxis(int index, ImmutableVector right, ImmutableVector up, ImmutableVector forward) {
+        return switch (index) {
+            case 0 -> right;
+            case 1 -> up;
+            case 2 -> forward;
+            default -> throw new IllegalStateException("Unexpected value: " + index);
         };
     }
 
@@ -149,35 +465,34 @@ public class OrientedBoundingBoxCollider implements Collider {
 
     @Override
     public boolean contains(Vector vector) {
-        ImmutableVector point = ImmutableVector.of(vector);
-        return getClosestPosition(point).distanceSquared(point) <= 0.01;
+        return this.distanceSquaredToClosest(vector.getX(), vector.getY(), vector.getZ()) <= 0.01;
     }
 
     @Override
     public OrientedBoundingBoxCollider affectEntities(Consumer<Flux<Entity>> consumer) {
-        this.wrapToAABB().affectEntities(flux -> consumer.accept(applyFilter(flux, Colliders::aabb)));
+        consumer.accept(EntitySnapshotCache.entities(this));
         return this;
     }
 
     @Override
     public OrientedBoundingBoxCollider affectBlocks(Consumer<Flux<Block>> consumer) {
-        this.wrapToAABB().affectBlocks(flux -> consumer.accept(applyFilter(flux, Colliders::aabb)));
+        consumer.accept(BlockShapeCache.blocks(this));
         return this;
     }
 
     @Override
     public OrientedBoundingBoxCollider affectLocations(Consumer<Flux<Location>> consumer) {
-        this.wrapToAABB().affectLocations(flux -> consumer.accept(applyFilter(flux, Colliders::aabb)));
+        consumer.accept(VoxelIterator.locations(this));
         return this;
     }
 
-    private <T> Flux<T> applyFilter(Flux<T> flux, Function<T, Collider> getter) {
-        return flux.filter(t -> this.intersects(getter.apply(t)));
-    }
-
-    private Collider wrapToAABB() {
-        double maxComponent = this.halfExtents.maxComponent();
-        ImmutableVector halfExtents = new ImmutableVector(maxComponent, maxComponent, maxComponent);
+    @Override
+    public AxisAlignedBoundingBoxCollider getBoundingBox() {
+        // Exact world bounds of the rotated box: |R| * halfExtents
+        double halfX = FastMath.abs(rightX) * extentX + FastMath.abs(upX) * extentY + FastMath.abs(forwardX) * extentZ;
+        double halfY = FastMath.abs(rightY) * extentX + FastMath.abs(upY) * extentY + FastMath.abs(forwardY) * extentZ;
+        double halfZ = FastMath.abs(rightZ) * extentX + FastMath.abs(upZ) * extentY + FastMath.abs(forwardZ) * extentZ;
+        ImmutableVector halfExtents = new ImmutableVector(halfX, halfY, halfZ);
         return Colliders.aabb(world, halfExtents.negative().add(center), halfExtents.add(center));
     }
 
@@ -186,6 +501,11 @@ public class OrientedBoundingBoxCollider implements Collider {
         return world;
     }
 
+    @Override
+    public int getShapeOrdinal() {
+        return SHAPE_ORDINAL;
+    }
+
     @Override
     public ImmutableVector getCenter() {
         return center;
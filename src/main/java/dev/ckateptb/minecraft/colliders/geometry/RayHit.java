@@ -0,0 +1,192 @@
+package dev.ckateptb.minecraft.colliders.geometry;
+
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Where a ray enters a collider. A ray starting inside hits at distance 0 with a zero normal.
+ */
+@Getter
+public class RayHit {
+    private final double distance;
+    /**
+     * Distance where the ray leaves the collider, capped by the max distance of the cast.
+     */
+    private final double exitDistance;
+    private final ImmutableVector point;
+    private final ImmutableVector normal;
+
+    public RayHit(double distance, double exitDistance, ImmutableVector point, ImmutableVector normal) {
+        this.distance = distance;
+        this.exitDistance = exitDistance;
+        this.point = point;
+        this.normal = normal;
+    }
+
+    static RayHit box(double originX, double originY, double originZ,
+                      double directionX, double directionY, double directionZ, double maxDistance,
+                      double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return box(originX, originY, originZ, directionX, directionY, directionZ, maxDistance,
+                (minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2, OrientedBoundingBoxCollider.WORLD_AXES,
+                (maxX - minX) / 2, (maxY - minY) / 2, (maxZ - minZ) / 2);
+    }
+
+    // Slab test in the frame of a box given by its center, three unit axes (row by row) and half extents
+    static RayHit box(double originX, double originY, double originZ,
+                      double directionX, double directionY, double directionZ, double maxDistance,
+                      double centerX, double centerY, double centerZ, double[] axes,
+                      double extentX, double extentY, double extentZ) {
+        double relativeX = originX - centerX;
+        double relativeY = originY - centerY;
+        double relativeZ = originZ - centerZ;
+        double near = 0;
+        double far = maxDistance;
+        int nearAxis = -1;
+        double nearSign = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            double axisX = axes[axis * 3];
+            double axisY = axes[axis * 3 + 1];
+            double axisZ = axes[axis * 3 + 2];
+            double extent = axis == 0 ? extentX : axis == 1 ? extentY : extentZ;
+            double origin = VectorMath.dot(relativeX, relativeY, relativeZ, axisX, axisY, axisZ);
+            double direction = VectorMath.dot(directionX, directionY, directionZ, axisX, axisY, axisZ);
+            if (direction == 0) {
+                if (origin < -extent || origin > extent) return null;
+                continue;
+            }
+            double inverse = 1 / direction;
+            double enter = (-extent - origin) * inverse;
+            double exit = (extent - origin) * inverse;
+            double sign = -1;
+            if (enter > exit) {
+                double swap = enter;
+                enter = exit;
+                exit = swap;
+                sign = 1;
+            }
+            if (enter > near) {
+                near = enter;
+                nearAxis = axis;
+                nearSign = sign;
+            }
+            far = FastMath.min(far, exit);
+            if (near > far) return null;
+        }
+        ImmutableVector normal = nearAxis == -1 ? ImmutableVector.ZERO : new ImmutableVector(
+                axes[nearAxis * 3] * nearSign, axes[nearAxis * 3 + 1] * nearSign, axes[nearAxis * 3 + 2] * nearSign);
+        return of(originX, originY, originZ, directionX, directionY, directionZ, near, far, normal);
+    }
+
+    static RayHit sphere(double originX, double originY, double originZ,
+                         double directionX, double directionY, double directionZ, double maxDistance,
+                         double centerX, double centerY, double centerZ, double radius) {
+        double relativeX = originX - centerX;
+        double relativeY = originY - centerY;
+        double relativeZ = originZ - centerZ;
+        double b = VectorMath.dot(relativeX, relativeY, relativeZ, directionX, directionY, directionZ);
+        double c = VectorMath.lengthSquared(relativeX, relativeY, relativeZ) - radius * radius;
+        if (c > 0 && b > 0) return null;
+        double discriminant = b * b - c;
+        if (discriminant < 0) return null;
+        double root = FastMath.sqrt(discriminant);
+        double near = FastMath.max(-b - root, 0);
+        if (near > maxDistance) return null;
+        double far = FastMath.min(-b + root, maxDistance);
+        ImmutableVector normal = near == 0 || radius == 0 ? ImmutableVector.ZERO : new ImmutableVector(
+                (relativeX + directionX * near) / radius,
+                (relativeY + directionY * near) / radius,
+                (relativeZ + directionZ * near) / radius);
+        return of(originX, originY, originZ, directionX, directionY, directionZ, near, far, normal);
+    }
+
+    // A capsule is convex, so the ray crosses it in one interval: the union of the intervals of its body and end spheres
+    static RayHit capsule(double originX, double originY, double originZ,
+                          double directionX, double directionY, double directionZ, double maxDistance,
+                          double startX, double startY, double startZ,
+                          double deltaX, double deltaY, double deltaZ, double radius) {
+        RayHit hit = sphere(originX, originY, originZ, directionX, directionY, directionZ, maxDistance,
+                startX, startY, startZ, radius);
+        double length = FastMath.sqrt(VectorMath.lengthSquared(deltaX, deltaY, deltaZ));
+        if (length == 0) return hit;
+        hit = union(hit, sphere(originX, originY, originZ, directionX, directionY, directionZ, maxDistance,
+                startX + deltaX, startY + deltaY, startZ + deltaZ, radius));
+        double axisX = deltaX / length;
+        double axisY = deltaY / length;
+        double axisZ = deltaZ / length;
+        double relativeX = originX - startX;
+        double relativeY = originY - startY;
+        double relativeZ = originZ - startZ;
+        double relativeAxis = VectorMath.dot(relativeX, relativeY, relativeZ, axisX, axisY, axisZ);
+        double directionAxis = VectorMath.dot(directionX, directionY, directionZ, axisX, axisY, axisZ);
+        // Parts perpendicular to the axis, the body is where they are within the radius
+        double perpendicularX = relativeX - axisX * relativeAxis;
+        double perpendicularY = relativeY - axisY * relativeAxis;
+        double perpendicularZ = relativeZ - axisZ * relativeAxis;
+        double stepX = directionX - axisX * directionAxis;
+        double stepY = directionY - axisY * directionAxis;
+        double stepZ = directionZ - axisZ * directionAxis;
+        double a = VectorMath.lengthSquared(stepX, stepY, stepZ);
+        double b = VectorMath.dot(perpendicularX, perpendicularY, perpendicularZ, stepX, stepY, stepZ);
+        double c = VectorMath.lengthSquared(perpendicularX, perpendicularY, perpendicularZ) - radius * radius;
+        double near;
+        double far;
+        if (a == 0) {
+            if (c > 0) return hit;
+            near = Double.NEGATIVE_INFINITY;
+            far = Double.POSITIVE_INFINITY;
+        } else {
+            double discriminant = b * b - a * c;
+            if (discriminant < 0) return hit;
+            double root = FastMath.sqrt(discriminant);
+            near = (-b - root) / a;
+            far = (-b + root) / a;
+        }
+        // Between the planes of the end points
+        if (directionAxis == 0) {
+            if (relativeAxis < 0 || relativeAxis > length) return hit;
+        } else {
+            double first = -relativeAxis / directionAxis;
+            double second = (length - relativeAxis) / directionAxis;
+            near = FastMath.max(near, FastMath.min(first, second));
+            far = FastMath.min(far, FastMath.max(first, second));
+        }
+        near = FastMath.max(near, 0);
+        far = FastMath.min(far, maxDistance);
+        if (near > far) return hit;
+        // Entering through an end plane is inside an end sphere, which entered no later, so the body only
+        // takes over the hit when it enters strictly first, through its side
+        if (hit != null && hit.distance <= near) {
+            return far > hit.exitDistance ? new RayHit(hit.distance, far, hit.point, hit.normal) : hit;
+        }
+        ImmutableVector normal = near == 0 || radius == 0 ? ImmutableVector.ZERO : new ImmutableVector(
+                (perpendicularX + stepX * near) / radius,
+                (perpendicularY + stepY * near) / radius,
+                (perpendicularZ + stepZ * near) / radius);
+        return of(originX, originY, originZ, directionX, directionY, directionZ, near,
+                hit == null ? far : FastMath.max(far, hit.exitDistance), normal);
+    }
+
+    // Earliest entry and latest exit of two overlapping intervals of the same ray
+    private static RayHit union(RayHit first, RayHit second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        RayHit entry = second.distance < first.distance ? second : first;
+        double exit = FastMath.max(first.exitDistance, second.exitDistance);
+        return exit == entry.exitDistance ? entry : new RayHit(entry.distance, exit, entry.point, entry.normal);
+    }
+
+    static RayHit of(double originX, double originY, double originZ,
+                     double directionX, double directionY, double directionZ,
+                     double distance, double exitDistance, ImmutableVector normal) {
+        ImmutableVector point = new ImmutableVector(originX + directionX * distance,
+                originY + directionY * distance, originZ + directionZ * distance);
+        return new RayHit(distance, exitDistance, point, normal);
+    }
+
+    @Override
+    public String toString() {
+        return "RayHit{" + "distance=" + distance + ", exitDistance=" + exitDistance + ", point=" + point + ", normal=" + normal + '}';
+    }
+}
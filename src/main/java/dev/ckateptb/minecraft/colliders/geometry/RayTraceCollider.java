@@ -3,10 +3,18 @@ package dev.ckateptb.minecraft.colliders.geometry;
 import dev.ckateptb.minecraft.atom.Atom;
 import dev.ckateptb.minecraft.colliders.Collider;
 import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.dispatch.CollisionDispatcher;
 import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import dev.ckateptb.minecraft.colliders.math.VoxelIterator;
+import dev.ckateptb.minecraft.colliders.math.VoxelTraversal;
+import dev.ckateptb.minecraft.colliders.metrics.ColliderQueryEvent;
+import dev.ckateptb.minecraft.colliders.snapshot.BlockShapeCache;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshot;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshotCache;
 import lombok.Getter;
-import lombok.SneakyThrows;
 import org.apache.commons.math3.util.FastMath;
+import org.bukkit.Bukkit;
 import org.bukkit.FluidCollisionMode;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -15,16 +23,17 @@ import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Entity;
 import org.bukkit.util.*;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public class RayTraceCollider implements Collider {
+    private static final int SHAPE_ORDINAL = CollisionDispatcher.ordinal(RayTraceCollider.class);
     @Getter
     protected final World world;
     @Getter
@@ -32,25 +41,45 @@ public class RayTraceCollider implements Collider {
     private final ImmutableVector direction;
     private final double distance;
     private final double size;
+    @Getter
     private final OrientedBoundingBoxCollider orientedBoundingBoxCollider;
+    /**
+     * Capsule of radius {@code size} around the ray from its origin to {@code distance}, null when the ray is a box.
+     */
+    @Getter
+    private final CapsuleCollider capsuleCollider;
+    /**
+     * Shape the ray is tested as, the capsule if it has one and the box otherwise.
+     */
+    @Getter
+    private final Collider shape;
 
     public RayTraceCollider(World world, ImmutableVector center, ImmutableVector direction, double distance, double size) {
+        this(world, center, direction, distance, size, false);
+    }
+
+    /**
+     * @param capsule test the ray as a capsule, a round beam without the corners and the separating axis test of the box
+     */
+    public RayTraceCollider(World world, ImmutableVector center, ImmutableVector direction, double distance, double size, boolean capsule) {
         this.world = world;
         this.center = center;
         this.direction = direction.normalize();
         this.distance = distance;
         this.size = size;
         this.orientedBoundingBoxCollider = this.toOrientedBoundingBox();
+        this.capsuleCollider = capsule ? new CapsuleCollider(world, center, center.add(this.direction.multiply(distance)), size) : null;
+        this.shape = capsule ? this.capsuleCollider : this.orientedBoundingBoxCollider;
     }
 
     @Override
     public RayTraceCollider at(Vector center) {
-        return new RayTraceCollider(world, ImmutableVector.of(center), direction, distance, size);
+        return new RayTraceCollider(world, ImmutableVector.of(center), direction, distance, size, capsuleCollider != null);
     }
 
     @Override
     public RayTraceCollider grow(Vector vector) {
-        return new RayTraceCollider(world, center, direction, distance + vector.getZ(), size + FastMath.max(vector.getX(), vector.getY()));
+        return new RayTraceCollider(world, center, direction, distance + vector.getZ(), size + FastMath.max(vector.getX(), vector.getY()), capsuleCollider != null);
     }
 
     @Override
@@ -60,39 +89,68 @@ public class RayTraceCollider implements Collider {
 
     @Override
     public ImmutableVector getHalfExtents() {
-        return this.orientedBoundingBoxCollider.getHalfExtents();
+        return this.shape.getHalfExtents();
+    }
+
+    @Override
+    public AxisAlignedBoundingBoxCollider getBoundingBox() {
+        return this.shape.getBoundingBox();
     }
 
     @Override
     public <RT extends Collider> boolean intersects(RT collider) {
-        return this.orientedBoundingBoxCollider.intersects(collider);
+        return CollisionDispatcher.intersects(this, collider);
+    }
+
+    @Override
+    public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return this.shape.intersects(minX, minY, minZ, maxX, maxY, maxZ);
     }
 
     @Override
     public boolean contains(Vector vector) {
-        return this.orientedBoundingBoxCollider.contains(vector);
+        return this.shape.contains(vector);
+    }
+
+    @Override
+    public Optional<RayHit> rayCast(Vector origin, Vector direction, double maxDistance) {
+        return this.shape.rayCast(origin, direction, maxDistance);
+    }
+
+    /**
+     * Casts this ray against the collider, grown by the size of the ray, so the hit is where the edge of the ray touches it.
+     */
+    public Optional<RayHit> rayCast(Collider collider) {
+        Collider target = size > 0 ? collider.grow(new Vector(size, size, size)) : collider;
+        return target.rayCast(center, direction, distance);
     }
 
     @Override
     public RayTraceCollider affectEntities(Consumer<Flux<Entity>> consumer) {
-        this.orientedBoundingBoxCollider.affectEntities(consumer);
+        consumer.accept(EntitySnapshotCache.entities(this));
         return this;
     }
 
     @Override
     public RayTraceCollider affectBlocks(Consumer<Flux<Block>> consumer) {
-        this.orientedBoundingBoxCollider.affectBlocks(consumer);
+        consumer.accept(BlockShapeCache.blocks(this));
         return this;
     }
 
     @Override
     public RayTraceCollider affectLocations(Consumer<Flux<Location>> consumer) {
-        this.orientedBoundingBoxCollider.affectLocations(consumer);
+        consumer.accept(VoxelIterator.locations(this));
         return this;
     }
 
+    @Override
+    public int getShapeOrdinal() {
+        return SHAPE_ORDINAL;
+    }
+
     private OrientedBoundingBoxCollider toOrientedBoundingBox() {
-        ImmutableVector immutableVector = new ImmutableVector(size, size, distance);
+        // Half extents, the box spans from the origin to the distance like the capsule does
+        ImmutableVector immutableVector = new ImmutableVector(size, size, distance / 2);
         final double _2PI = 2 * Math.PI;
         final double x = direction.getX();
         final double z = direction.getZ();
@@ -110,7 +168,7 @@ public class RayTraceCollider implements Collider {
         }
         float roll = 0;
         EulerAngle eulerAngle = new ImmutableVector(pitch, yaw, roll).radians().toEulerAngle();
-        return Colliders.obb(world, center.add(direction.multiply(distance)), immutableVector, eulerAngle);
+        return Colliders.obb(world, center.add(direction.multiply(distance / 2)), immutableVector, eulerAngle);
     }
 
     public Optional<Map.Entry<Block, BlockFace>> getFirstBlock(boolean ignoreLiquids, boolean ignorePassable) {
@@ -126,67 +184,135 @@ public class RayTraceCollider implements Collider {
     }
 
     public Optional<Block> getBlock(boolean ignoreLiquids, boolean ignorePassable, boolean ignoreObstacles, Predicate<Block> filter) {
-        BlockIterator it = new BlockIterator(world, center, direction, size, Math.min(100, (int) Math.ceil(distance)));
-        while (it.hasNext()) {
-            Block block = it.next();
+        ColliderQueryEvent event = new ColliderQueryEvent();
+        event.begin();
+        AtomicReference<Block> result = new AtomicReference<>();
+        long[] scanned = new long[1];
+        this.traverseBlocks((x, y, z, distance, face) -> {
+            scanned[0]++;
+            Block block = world.getBlockAt(x, y, z);
             boolean passable = block.isPassable();
             if (passable) {
                 if (block.isLiquid()) {
                     if (ignoreLiquids) {
-                        continue;
+                        return true;
                     }
                 } else if (ignorePassable) {
-                    continue;
+                    return true;
                 }
             }
             if (filter.test(block)) {
-                return Optional.of(block);
-            }
-            if (!ignoreObstacles && !passable) {
-                break;
+                result.set(block);
+                return false;
             }
-        }
-        return Optional.empty();
+            return ignoreObstacles || passable;
+        });
+        event.report("getBlock", this, scanned[0], result.get() == null ? 0 : 1, scanned[0]);
+        return Optional.ofNullable(result.get());
+    }
+
+    /**
+     * Visits the blocks touched by this ray, thickened by its size, in order of distance without creating blocks.
+     */
+    public void traverseBlocks(VoxelTraversal.Visitor visitor) {
+        VoxelTraversal.traverse(center.getX(), center.getY(), center.getZ(),
+                direction.getX(), direction.getY(), direction.getZ(), distance, size, visitor);
     }
 
     public Optional<Entity> getEntity(Predicate<Entity> filter) {
         return this.getEntity(filter, this.distance);
     }
 
-    @SneakyThrows
+    /**
+     * Blocks until the entity snapshot of this tick is available, on the main thread it is captured directly.
+     */
     public Optional<Entity> getEntity(Predicate<Entity> filter, double distance) {
-        Vector startPos = center.toBukkitVector();
-        Vector dir = direction.clone().normalize().multiply(distance);
-        BoundingBox aabb = BoundingBox.of(startPos, startPos).expandDirectional(dir).expand(size);
-        CountDownLatch countDownLatch = new CountDownLatch(1);
-        AtomicReference<Collection<Entity>> reference = new AtomicReference<>();
-        Atom.syncScheduler().schedule(() -> {
-            reference.set(startPos.toLocation(world).getNearbyEntities(aabb.getMaxX(), aabb.getMaxY(), aabb.getMaxZ()));
-            countDownLatch.countDown();
+        return this.getEntityAsync(filter, distance).blockOptional();
+    }
+
+    public Mono<Map.Entry<Block, BlockFace>> getFirstBlockAsync(boolean ignoreLiquids, boolean ignorePassable) {
+        return sync(() -> this.getFirstBlock(ignoreLiquids, ignorePassable).orElse(null));
+    }
+
+    public Mono<Block> getBlockAsync(boolean ignoreLiquids, boolean ignorePassable, Predicate<Block> filter) {
+        return this.getBlockAsync(ignoreLiquids, ignorePassable, true, filter);
+    }
+
+    public Mono<Block> getBlockAsync(boolean ignoreLiquids, boolean ignorePassable, boolean ignoreObstacles, Predicate<Block> filter) {
+        return sync(() -> this.getBlock(ignoreLiquids, ignorePassable, ignoreObstacles, filter).orElse(null));
+    }
+
+    public Mono<Entity> getEntityAsync(Predicate<Entity> filter) {
+        return this.getEntityAsync(filter, this.distance);
+    }
+
+    /**
+     * Nearest entity hit by the ray. Entities come from the per-tick {@link EntitySnapshotCache},
+     * so rays cast in the same tick share one entity lookup.
+     */
+    public Mono<Entity> getEntityAsync(Predicate<Entity> filter, double distance) {
+        return EntitySnapshotCache.snapshot(world).flatMap(snapshot -> {
+            int index = this.getNearestEntity(snapshot, filter, distance);
+            return index == -1 ? Mono.empty() : Mono.just(snapshot.getEntity(index));
         });
-        countDownLatch.await(); // TODO We shouldn't block thread
-        Collection<Entity> entities = reference.get();
-
-        Entity nearestHitEntity = null;
-        RayTraceResult nearestHitResult = null;
-        double nearestDistanceSq = Double.MAX_VALUE;
-
-        for (Entity entity : entities) {
-            if (!filter.test(entity)) continue;
-            BoundingBox boundingBox = entity.getBoundingBox().expand(size);
-            RayTraceResult hitResult = boundingBox.rayTrace(startPos, direction, distance);
-            if (hitResult != null) {
-                double distanceSq = startPos.distanceSquared(hitResult.getHitPosition());
-                if (distanceSq < nearestDistanceSq) {
-                    nearestHitEntity = entity;
-                    nearestHitResult = hitResult;
-                    nearestDistanceSq = distanceSq;
-                }
-            }
-        }
-        RayTraceResult traceResult = (nearestHitEntity == null) ? null : new RayTraceResult(nearestHitResult.getHitPosition(), nearestHitEntity, nearestHitResult.getHitBlockFace());
-        if (traceResult == null) return Optional.empty();
-        return Optional.ofNullable(traceResult.getHitEntity());
+    }
+
+    public Mono<Vector> getPositionAsync(boolean ignoreEntity, boolean ignoreBlock, boolean ignoreLiquid, boolean ignorePassable, Predicate<Entity> entityFilter, Predicate<Block> blockFilter) {
+        Mono<Optional<Vector>> blockPosition = ignoreBlock ? Mono.just(Optional.empty()) : this.getBlockAsync(ignoreLiquid, ignorePassable, true, blockFilter)
+                .map(block -> Optional.of(this.getBlockPosition(block)))
+                .defaultIfEmpty(Optional.empty());
+        return blockPosition.flatMap(optional -> {
+            Vector position = optional.orElseGet(() -> center.add(direction.multiply(distance)));
+            if (ignoreEntity) return Mono.just(position);
+            double entityDistance = optional.map(center::distance).orElse(distance);
+            return EntitySnapshotCache.snapshot(world).map(snapshot -> {
+                int index = this.getNearestEntity(snapshot, entityFilter, entityDistance);
+                if (index == -1) return position;
+                // Center of the entity bounding box, the location raised by half of the height
+                return new ImmutableVector(
+                        (snapshot.getMinX(index) + snapshot.getMaxX(index)) * 0.5,
+                        (snapshot.getMinY(index) + snapshot.getMaxY(index)) * 0.5,
+                        (snapshot.getMinZ(index) + snapshot.getMaxZ(index)) * 0.5);
+            });
+        });
+    }
+
+    private int getNearestEntity(EntitySnapshot snapshot, Predicate<Entity> filter, double distance) {
+        double originX = center.getX(), originY = center.getY(), originZ = center.getZ();
+        double directionX = direction.getX(), directionY = direction.getY(), directionZ = direction.getZ();
+        double endX = originX + directionX * distance, endY = originY + directionY * distance, endZ = originZ + directionZ * distance;
+        ColliderQueryEvent event = new ColliderQueryEvent();
+        event.begin();
+        int[] nearest = {-1};
+        double[] nearestDistance = {Double.MAX_VALUE};
+        long[] candidates = new long[1];
+        snapshot.query(
+                FastMath.min(originX, endX) - size, FastMath.min(originY, endY) - size, FastMath.min(originZ, endZ) - size,
+                FastMath.max(originX, endX) + size, FastMath.max(originY, endY) + size, FastMath.max(originZ, endZ) + size,
+                index -> {
+                    candidates[0]++;
+                    double hit = VectorMath.rayIntersectAABB(originX, originY, originZ, directionX, directionY, directionZ, distance,
+                            snapshot.getMinX(index) - size, snapshot.getMinY(index) - size, snapshot.getMinZ(index) - size,
+                            snapshot.getMaxX(index) + size, snapshot.getMaxY(index) + size, snapshot.getMaxZ(index) + size);
+                    if (hit >= 0 && hit < nearestDistance[0] && filter.test(snapshot.getEntity(index))) {
+                        nearest[0] = index;
+                        nearestDistance[0] = hit;
+                    }
+                });
+        event.report("getEntity", this, candidates[0], nearest[0] == -1 ? 0 : 1, 0);
+        return nearest[0];
+    }
+
+    private Vector getBlockPosition(Block block) {
+        ImmutableVector immutableVector = ImmutableVector.of(block.getLocation().toCenterLocation());
+        return center.add(direction.multiply(center.distance(immutableVector) - 0.5));
+    }
+
+    // Block access has to happen on the main thread, run directly when already there
+    private static <T> Mono<T> sync(Callable<T> callable) {
+        return Mono.defer(() -> Bukkit.isPrimaryThread()
+                ? Mono.fromCallable(callable)
+                : Mono.fromCallable(callable).subscribeOn(Atom.syncScheduler()));
     }
 
     public Optional<Vector> getPosition(boolean ignoreEntity, boolean ignoreBlock, boolean ignoreLiquid, boolean ignorePassable, Predicate<Entity> entityFilter, Predicate<Block> blockFilter) {
@@ -198,9 +324,7 @@ public class RayTraceCollider implements Collider {
         if (!ignoreBlock) {
             Optional<Block> optional = getBlock(ignoreLiquid, ignorePassable, true, blockFilter);
             if (optional.isPresent()) {
-                Block block = optional.get();
-                ImmutableVector immutableVector = ImmutableVector.of(block.getLocation().toCenterLocation());
-                blockPosition = center.add(direction.normalize().multiply(center.distance(immutableVector) - 0.5));
+                blockPosition = this.getBlockPosition(optional.get());
                 distance = center.distance(blockPosition);
             }
         }
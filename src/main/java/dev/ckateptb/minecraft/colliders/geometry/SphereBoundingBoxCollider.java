@@ -3,7 +3,14 @@ package dev.ckateptb.minecraft.colliders.geometry;
 import com.google.common.base.Objects;
 import dev.ckateptb.minecraft.colliders.Collider;
 import dev.ckateptb.minecraft.colliders.Colliders;
+import dev.ckateptb.minecraft.colliders.dispatch.CollisionDispatcher;
 import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.LerpUtil;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import dev.ckateptb.minecraft.colliders.math.VoxelIterator;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import dev.ckateptb.minecraft.colliders.snapshot.BlockShapeCache;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshotCache;
 import lombok.Getter;
 import org.apache.commons.math3.util.FastMath;
 import org.bukkit.Location;
@@ -13,11 +20,16 @@ import org.bukkit.entity.Entity;
 import org.bukkit.util.Vector;
 import reactor.core.publisher.Flux;
 
+import java.util.BitSet;
+import java.util.Optional;
 import java.util.function.Consumer;
-import java.util.function.Function;
 
 @Getter
 public class SphereBoundingBoxCollider implements Collider {
+    static final int SHAPE_ORDINAL = CollisionDispatcher.ordinal(SphereBoundingBoxCollider.class);
+    private static final int ADVANCE_ITERATIONS = 32;
+    private static final double CONTACT_TOLERANCE = 1e-4;
+
     protected final World world;
     protected final ImmutableVector center;
     protected final double radius;
@@ -50,59 +62,188 @@ public class SphereBoundingBoxCollider implements Collider {
 
     @Override
     public boolean intersects(Collider other) {
-        World otherWorld = other.getWorld();
-        if (!otherWorld.equals(world)) return false;
-        if (other instanceof SphereBoundingBoxCollider sphere) {
-            return sphere.center.isInSphere(center, radius + sphere.radius);
-        }
-        if (other instanceof AxisAlignedBoundingBoxCollider aabb) {
-            ImmutableVector min = aabb.min;
-            ImmutableVector max = aabb.max;
-            double x = FastMath.max(min.getX(), FastMath.min(center.getX(), max.getX()));
-            double y = FastMath.max(min.getY(), FastMath.min(center.getY(), max.getY()));
-            double z = FastMath.max(min.getZ(), FastMath.min(center.getZ(), max.getZ()));
-            return contains(new ImmutableVector(x, y, z));
-        }
-        if (other instanceof OrientedBoundingBoxCollider obb) {
-            return obb.intersects(this);
-        }
-        if (other instanceof RayTraceCollider ray) {
-            return ray.intersects(this);
+        return CollisionDispatcher.intersects(this, other);
+    }
+
+    @Override
+    public BitSet intersectsMany(Collider[] others) {
+        if (!CollisionMetrics.isEnabled()) return this.intersectsEach(others);
+        long start = System.nanoTime();
+        BitSet result = this.intersectsEach(others);
+        CollisionMetrics.recordIntersectsMany(this, others, System.nanoTime() - start);
+        return result;
+    }
+
+    private BitSet intersectsEach(Collider[] others) {
+        BitSet result = new BitSet(others.length);
+        double x = center.getX();
+        double y = center.getY();
+        double z = center.getZ();
+        double radiusSquared = radius * radius;
+        for (int i = 0; i < others.length; i++) {
+            Collider other = others[i];
+            int ordinal = other.getShapeOrdinal();
+            boolean intersects;
+            if (ordinal == SHAPE_ORDINAL) {
+                SphereBoundingBoxCollider sphere = (SphereBoundingBoxCollider) other;
+                ImmutableVector otherCenter = sphere.center;
+                double radiusSum = radius + sphere.radius;
+                intersects = world.equals(sphere.world)
+                        && VectorMath.distanceSquared(x, y, z, otherCenter.getX(), otherCenter.getY(), otherCenter.getZ()) <= radiusSum * radiusSum;
+            } else if (ordinal == AxisAlignedBoundingBoxCollider.SHAPE_ORDINAL) {
+                AxisAlignedBoundingBoxCollider aabb = (AxisAlignedBoundingBoxCollider) other;
+                ImmutableVector min = aabb.min;
+                ImmutableVector max = aabb.max;
+                intersects = world.equals(aabb.world) && VectorMath.distanceSquaredToAABB(x, y, z,
+                        min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ()) <= radiusSquared;
+            } else {
+                intersects = CollisionDispatcher.intersects(this, other);
+            }
+            if (intersects) result.set(i);
         }
-        return false;
+        return result;
+    }
+
+    public boolean intersectsSphere(double x, double y, double z, double radius) {
+        double distance = VectorMath.distanceSquared(center.getX(), center.getY(), center.getZ(), x, y, z);
+        double radiusSum = this.radius + radius;
+        return distance <= radiusSum * radiusSum;
+    }
+
+    @Override
+    public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double distance = VectorMath.distanceSquaredToAABB(center.getX(), center.getY(), center.getZ(),
+                minX, minY, minZ, maxX, maxY, maxZ);
+        return distance <= radius * radius;
     }
 
     @Override
     public boolean contains(Vector vector) {
-        return vector.isInSphere(center, radius);
+        double distance = VectorMath.distanceSquared(center.getX(), center.getY(), center.getZ(),
+                vector.getX(), vector.getY(), vector.getZ());
+        return distance <= radius * radius;
+    }
+
+    public double sweep(Vector delta, SphereBoundingBoxCollider other) {
+        double length = delta.length();
+        if (length == 0) return this.intersects(other) ? 0 : -1;
+        ImmutableVector otherCenter = other.center;
+        RayHit hit = RayHit.sphere(center.getX(), center.getY(), center.getZ(),
+                delta.getX() / length, delta.getY() / length, delta.getZ() / length, length,
+                otherCenter.getX(), otherCenter.getY(), otherCenter.getZ(), radius + other.radius);
+        return hit == null ? -1 : hit.getDistance() / length;
+    }
+
+    public double sweep(Vector delta, AxisAlignedBoundingBoxCollider other) {
+        ImmutableVector min = other.min;
+        ImmutableVector max = other.max;
+        return this.advance(center.getX(), center.getY(), center.getZ(), delta.getX(), delta.getY(), delta.getZ(),
+                min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+    }
+
+    public double sweep(Vector delta, OrientedBoundingBoxCollider other) {
+        // The distance does not change with the frame, so advance in the one of the box where it is axis aligned
+        ImmutableVector right = other.getRight();
+        ImmutableVector up = other.getUp();
+        ImmutableVector forward = other.getForward();
+        ImmutableVector otherCenter = other.getCenter();
+        ImmutableVector halfExtents = other.getHalfExtents();
+        double dx = center.getX() - otherCenter.getX();
+        double dy = center.getY() - otherCenter.getY();
+        double dz = center.getZ() - otherCenter.getZ();
+        double extentX = FastMath.abs(halfExtents.getX());
+        double extentY = FastMath.abs(halfExtents.getY());
+        double extentZ = FastMath.abs(halfExtents.getZ());
+        return this.advance(
+                VectorMath.dot(dx, dy, dz, right.getX(), right.getY(), right.getZ()),
+                VectorMath.dot(dx, dy, dz, up.getX(), up.getY(), up.getZ()),
+                VectorMath.dot(dx, dy, dz, forward.getX(), forward.getY(), forward.getZ()),
+                VectorMath.dot(delta.getX(), delta.getY(), delta.getZ(), right.getX(), right.getY(), right.getZ()),
+                VectorMath.dot(delta.getX(), delta.getY(), delta.getZ(), up.getX(), up.getY(), up.getZ()),
+                VectorMath.dot(delta.getX(), delta.getY(), delta.getZ(), forward.getX(), forward.getY(), forward.getZ()),
+                -extentX, -extentY, -extentZ, extentX, extentY, extentZ);
+    }
+
+    // Conservative advancement: the distance to a convex target is convex along the path,
+    // so stepping to where its tangent reaches the radius never passes the first contact
+    private double advance(double x, double y, double z, double deltaX, double deltaY, double deltaZ,
+                           double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double time = 0;
+        for (int i = 0; i < ADVANCE_ITERATIONS; i++) {
+            double px = x + deltaX * time;
+            double py = y + deltaY * time;
+            double pz = z + deltaZ * time;
+            double nx = px - LerpUtil.clamp(px, minX, maxX);
+            double ny = py - LerpUtil.clamp(py, minY, maxY);
+            double nz = pz - LerpUtil.clamp(pz, minZ, maxZ);
+            double distance = FastMath.sqrt(VectorMath.lengthSquared(nx, ny, nz));
+            double gap = distance - radius;
+            if (gap <= CONTACT_TOLERANCE) return time;
+            double speed = -VectorMath.dot(deltaX, deltaY, deltaZ, nx, ny, nz) / distance;
+            if (speed <= 0) return -1;
+            time += gap / speed;
+            if (time > 1) return -1;
+        }
+        return -1;
+    }
+
+    public Optional<Contact> contact(SphereBoundingBoxCollider other) {
+        ImmutableVector otherCenter = other.center;
+        double nx = center.getX() - otherCenter.getX();
+        double ny = center.getY() - otherCenter.getY();
+        double nz = center.getZ() - otherCenter.getZ();
+        double radiusSum = radius + other.radius;
+        double distanceSquared = VectorMath.lengthSquared(nx, ny, nz);
+        if (distanceSquared > radiusSum * radiusSum) return Optional.empty();
+        double distance = FastMath.sqrt(distanceSquared);
+        ImmutableVector normal = distance == 0 ? ImmutableVector.PLUS_J : new ImmutableVector(nx / distance, ny / distance, nz / distance);
+        double offset = (other.radius - radius + distance) / 2;
+        ImmutableVector point = new ImmutableVector(otherCenter.getX() + normal.getX() * offset,
+                otherCenter.getY() + normal.getY() * offset, otherCenter.getZ() + normal.getZ() * offset);
+        return Optional.of(new Contact(radiusSum - distance, normal, point));
+    }
+
+    public Optional<Contact> contact(AxisAlignedBoundingBoxCollider other) {
+        ImmutableVector otherCenter = other.getCenter();
+        ImmutableVector otherExtents = other.getHalfExtents();
+        return Optional.ofNullable(Contact.sphereBox(center.getX(), center.getY(), center.getZ(), radius,
+                otherCenter.getX(), otherCenter.getY(), otherCenter.getZ(), OrientedBoundingBoxCollider.WORLD_AXES,
+                otherExtents.getX(), otherExtents.getY(), otherExtents.getZ()));
+    }
+
+    public Optional<Contact> contact(OrientedBoundingBoxCollider other) {
+        return Optional.ofNullable(other.sphereContact(center.getX(), center.getY(), center.getZ(), radius));
+    }
+
+    @Override
+    public Optional<RayHit> rayCast(Vector origin, Vector direction, double maxDistance) {
+        double length = direction.length();
+        if (length == 0) return Optional.empty();
+        return Optional.ofNullable(RayHit.sphere(origin.getX(), origin.getY(), origin.getZ(),
+                direction.getX() / length, direction.getY() / length, direction.getZ() / length, maxDistance,
+                center.getX(), center.getY(), center.getZ(), radius));
     }
 
     @Override
     public SphereBoundingBoxCollider affectEntities(Consumer<Flux<Entity>> consumer) {
-        this.wrapToAABB().affectEntities(flux -> consumer.accept(applyFilter(flux, Colliders::aabb)));
+        consumer.accept(EntitySnapshotCache.entities(this));
         return this;
     }
 
     @Override
     public SphereBoundingBoxCollider affectBlocks(Consumer<Flux<Block>> consumer) {
-        this.wrapToAABB().affectBlocks(flux -> consumer.accept(applyFilter(flux, Colliders::aabb)));
+        consumer.accept(BlockShapeCache.blocks(this));
         return this;
     }
 
     @Override
     public SphereBoundingBoxCollider affectLocations(Consumer<Flux<Location>> consumer) {
-        this.wrapToAABB().affectLocations(flux -> consumer.accept(applyFilter(flux, Colliders::aabb)));
+        consumer.accept(VoxelIterator.locations(this));
         return this;
     }
 
-    private <T> Flux<T> applyFilter(Flux<T> flux, Function<T, Collider> getter) {
-        return flux.filter(t -> {
-            Collider aabb = getter.apply(t);
-            return this.intersects(aabb);
-        });
-    }
-
-    private Collider wrapToAABB() {
+    @Override
+    public AxisAlignedBoundingBoxCollider getBoundingBox() {
         ImmutableVector halfExtents = this.getHalfExtents();
         return Colliders.aabb(world, halfExtents.negative().add(center), halfExtents.add(center));
     }
@@ -112,6 +253,11 @@ public class SphereBoundingBoxCollider implements Collider {
         return world;
     }
 
+    @Override
+    public int getShapeOrdinal() {
+        return SHAPE_ORDINAL;
+    }
+
     @Override
     public ImmutableVector getCenter() {
         return center;
@@ -0,0 +1,209 @@
+package dev.ckateptb.minecraft.colliders.index;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.geometry.AxisAlignedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.geometry.SphereBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Many small spheres and axis aligned boxes of one world kept in parallel arrays instead of one object per collider.
+ * <p>
+ * Every element is a box rounded by a radius: boxes have no radius, spheres have no extents. So one branch free kernel
+ * tests both shapes exactly. Results are bitmasks whose bit {@code i} stands for element {@code i}.
+ * <p>
+ * Not thread safe, a batch is expected to be filled and queried by the same thread.
+ */
+public class ColliderBatch {
+    @Getter
+    private final World world;
+    private int size;
+    private double[] centerX;
+    private double[] centerY;
+    private double[] centerZ;
+    private double[] extentX;
+    private double[] extentY;
+    private double[] extentZ;
+    private double[] radius;
+
+    public ColliderBatch(World world) {
+        this(world, 64);
+    }
+
+    public ColliderBatch(World world, int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        this.world = world;
+        this.centerX = new double[capacity];
+        this.centerY = new double[capacity];
+        this.centerZ = new double[capacity];
+        this.extentX = new double[capacity];
+        this.extentY = new double[capacity];
+        this.extentZ = new double[capacity];
+        this.radius = new double[capacity];
+    }
+
+    public int addSphere(double x, double y, double z, double radius) {
+        return this.add(x, y, z, 0, 0, 0, radius);
+    }
+
+    public int addBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return this.add((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2,
+                FastMath.abs(maxX - minX) / 2, FastMath.abs(maxY - minY) / 2, FastMath.abs(maxZ - minZ) / 2, 0);
+    }
+
+    /**
+     * Adds a sphere or an axis aligned box of the batch world, other shapes have no place in the arrays.
+     */
+    public int add(Collider collider) {
+        if (!world.equals(collider.getWorld())) {
+            throw new IllegalArgumentException("Collider belongs to another world");
+        }
+        ImmutableVector center = collider.getCenter();
+        if (collider instanceof SphereBoundingBoxCollider sphere) {
+            return this.addSphere(center.getX(), center.getY(), center.getZ(), sphere.getRadius());
+        }
+        if (collider instanceof AxisAlignedBoundingBoxCollider) {
+            ImmutableVector halfExtents = collider.getHalfExtents();
+            return this.add(center.getX(), center.getY(), center.getZ(), halfExtents.getX(), halfExtents.getY(), halfExtents.getZ(), 0);
+        }
+        throw new IllegalArgumentException("Only spheres and axis aligned boxes can be batched, got " + collider.getClass().getSimpleName());
+    }
+
+    private int add(double x, double y, double z, double extentX, double extentY, double extentZ, double radius) {
+        if (size == centerX.length) this.grow();
+        int index = size++;
+        this.centerX[index] = x;
+        this.centerY[index] = y;
+        this.centerZ[index] = z;
+        this.extentX[index] = extentX;
+        this.extentY[index] = extentY;
+        this.extentZ[index] = extentZ;
+        this.radius[index] = radius;
+        return index;
+    }
+
+    private void grow() {
+        int capacity = FastMath.max(16, centerX.length * 2);
+        this.centerX = Arrays.copyOf(centerX, capacity);
+        this.centerY = Arrays.copyOf(centerY, capacity);
+        this.centerZ = Arrays.copyOf(centerZ, capacity);
+        this.extentX = Arrays.copyOf(extentX, capacity);
+        this.extentY = Arrays.copyOf(extentY, capacity);
+        this.extentZ = Arrays.copyOf(extentZ, capacity);
+        this.radius = Arrays.copyOf(radius, capacity);
+    }
+
+    /**
+     * Moves the element without changing its size.
+     */
+    public void move(int index, double x, double y, double z) {
+        Objects.checkIndex(index, size);
+        this.centerX[index] = x;
+        this.centerY[index] = y;
+        this.centerZ[index] = z;
+    }
+
+    /**
+     * Removes the element by moving the last one into its place, so the last element takes over the index.
+     */
+    public void remove(int index) {
+        Objects.checkIndex(index, size);
+        int last = --size;
+        this.centerX[index] = centerX[last];
+        this.centerY[index] = centerY[last];
+        this.centerZ[index] = centerZ[last];
+        this.extentX[index] = extentX[last];
+        this.extentY[index] = extentY[last];
+        this.extentZ[index] = extentZ[last];
+        this.radius[index] = radius[last];
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The element as a collider, allocated on every call.
+     */
+    public Collider get(int index) {
+        Objects.checkIndex(index, size);
+        Vector center = new Vector(centerX[index], centerY[index], centerZ[index]);
+        if (radius[index] > 0) return new SphereBoundingBoxCollider(world, center, radius[index]);
+        ImmutableVector halfExtents = new ImmutableVector(extentX[index], extentY[index], extentZ[index]);
+        ImmutableVector immutableCenter = ImmutableVector.of(center);
+        return new AxisAlignedBoundingBoxCollider(world, immutableCenter.subtract(halfExtents), immutableCenter.add(halfExtents));
+    }
+
+    public BitSet containsPoint(double x, double y, double z) {
+        return this.kernel(x, y, z, 0, 0, 0, 0);
+    }
+
+    public BitSet overlapsAabb(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return this.kernel((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2,
+                FastMath.abs(maxX - minX) / 2, FastMath.abs(maxY - minY) / 2, FastMath.abs(maxZ - minZ) / 2, 0);
+    }
+
+    public BitSet overlapsSphere(double x, double y, double z, double radius) {
+        return this.kernel(x, y, z, 0, 0, 0, radius);
+    }
+
+    /**
+     * Elements intersecting the collider. Spheres and axis aligned boxes are answered by the kernels alone,
+     * other shapes by the kernel for their bounds followed by an exact test of the candidates.
+     */
+    public BitSet intersects(Collider collider) {
+        if (!world.equals(collider.getWorld())) return new BitSet();
+        ImmutableVector center = collider.getCenter();
+        if (collider instanceof SphereBoundingBoxCollider sphere) {
+            return this.overlapsSphere(center.getX(), center.getY(), center.getZ(), sphere.getRadius());
+        }
+        AxisAlignedBoundingBoxCollider bounds = collider.getBoundingBox();
+        ImmutableVector min = bounds.getMin();
+        ImmutableVector max = bounds.getMax();
+        BitSet result = this.overlapsAabb(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+        if (collider instanceof AxisAlignedBoundingBoxCollider) return result;
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            boolean intersects = radius[i] > 0 ? collider.intersects(this.get(i)) : collider.intersects(
+                    centerX[i] - extentX[i], centerY[i] - extentY[i], centerZ[i] - extentZ[i],
+                    centerX[i] + extentX[i], centerY[i] + extentY[i], centerZ[i] + extentZ[i]);
+            if (!intersects) result.clear(i);
+        }
+        return result;
+    }
+
+    // Rounded query box against every rounded element: the gap between both boxes must not exceed the radius sum
+    private BitSet kernel(double x, double y, double z, double queryExtentX, double queryExtentY, double queryExtentZ, double queryRadius) {
+        long[] words = new long[(size + 63) >>> 6];
+        for (int word = 0; word < words.length; word++) {
+            int from = word << 6;
+            int to = FastMath.min(size, from + 64);
+            long bits = 0;
+            for (int i = from; i < to; i++) {
+                double gapX = FastMath.abs(centerX[i] - x) - extentX[i] - queryExtentX;
+                double gapY = FastMath.abs(centerY[i] - y) - extentY[i] - queryExtentY;
+                double gapZ = FastMath.abs(centerZ[i] - z) - extentZ[i] - queryExtentZ;
+                gapX = gapX > 0 ? gapX : 0;
+                gapY = gapY > 0 ? gapY : 0;
+                gapZ = gapZ > 0 ? gapZ : 0;
+                double radiusSum = radius[i] + queryRadius;
+                long hit = gapX * gapX + gapY * gapY + gapZ * gapZ <= radiusSum * radiusSum ? 1 : 0;
+                bits |= hit << (i - from);
+            }
+            words[word] = bits;
+        }
+        return BitSet.valueOf(words);
+    }
+}
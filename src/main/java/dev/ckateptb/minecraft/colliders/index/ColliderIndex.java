@@ -0,0 +1,59 @@
+package dev.ckateptb.minecraft.colliders.index;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Broad-phase index of colliders living in one world.
+ * Colliders are immutable, so a moved collider is stored again under the id returned by {@link #insert(Collider)}.
+ */
+public interface ColliderIndex {
+    int insert(Collider collider);
+
+    boolean update(int id, Collider collider);
+
+    boolean remove(int id);
+
+    Collider get(int id);
+
+    int size();
+
+    void clear();
+
+    /**
+     * Visits every indexed collider intersecting the given one.
+     */
+    void query(Collider collider, Consumer<Collider> consumer);
+
+    /**
+     * Visits every indexed collider containing the given point.
+     */
+    void query(Vector point, Consumer<Collider> consumer);
+
+    /**
+     * Visits every indexed collider whose bounds are crossed by the ray segment.
+     */
+    void queryRay(Vector origin, Vector direction, double distance, Consumer<Collider> consumer);
+
+    /**
+     * Visits every pair of intersecting indexed colliders once.
+     */
+    void queryPairs(BiConsumer<Collider, Collider> consumer);
+
+    default List<Collider> query(Collider collider) {
+        List<Collider> colliders = new ArrayList<>();
+        this.query(collider, colliders::add);
+        return colliders;
+    }
+
+    default List<Collider> query(Vector point) {
+        List<Collider> colliders = new ArrayList<>();
+        this.query(point, colliders::add);
+        return colliders;
+    }
+}
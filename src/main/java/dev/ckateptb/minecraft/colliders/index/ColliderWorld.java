@@ -0,0 +1,95 @@
+package dev.ckateptb.minecraft.colliders.index;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import lombok.Getter;
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Persistent colliders (arena walls, traps, zones) of one world, stored in a broad-phase index.
+ */
+@Getter
+public class ColliderWorld {
+    private static final Map<UUID, ColliderWorld> WORLDS = new ConcurrentHashMap<>();
+
+    private final World world;
+    private final ColliderIndex index;
+
+    public ColliderWorld(World world, ColliderIndex index) {
+        this.world = world;
+        this.index = index;
+    }
+
+    public static ColliderWorld of(World world) {
+        return of(world, SpatialHashColliderIndex::new);
+    }
+
+    /**
+     * Index backend is only chosen on first access, use {@link DynamicAabbTreeColliderIndex} when collider sizes vary widely.
+     */
+    public static ColliderWorld of(World world, Supplier<ColliderIndex> backend) {
+        return WORLDS.computeIfAbsent(world.getUID(), uuid -> new ColliderWorld(world, backend.get()));
+    }
+
+    public static void unload(World world) {
+        WORLDS.remove(world.getUID());
+    }
+
+    public int insert(Collider collider) {
+        this.validate(collider);
+        return index.insert(collider);
+    }
+
+    public boolean update(int id, Collider collider) {
+        this.validate(collider);
+        return index.update(id, collider);
+    }
+
+    public boolean remove(int id) {
+        return index.remove(id);
+    }
+
+    public Collider get(int id) {
+        return index.get(id);
+    }
+
+    public void query(Collider collider, Consumer<Collider> consumer) {
+        if (!world.equals(collider.getWorld())) return;
+        index.query(collider, consumer);
+    }
+
+    public void query(Vector point, Consumer<Collider> consumer) {
+        index.query(point, consumer);
+    }
+
+    public List<Collider> query(Collider collider) {
+        if (!world.equals(collider.getWorld())) return List.of();
+        return index.query(collider);
+    }
+
+    public List<Collider> query(Vector point) {
+        return index.query(point);
+    }
+
+    public void queryRay(Vector origin, Vector direction, double distance, Consumer<Collider> consumer) {
+        index.queryRay(origin, direction, distance, consumer);
+    }
+
+    public void queryPairs(BiConsumer<Collider, Collider> consumer) {
+        index.queryPairs(consumer);
+    }
+
+    private void validate(Collider collider) {
+        if (!world.equals(collider.getWorld())) {
+            throw new IllegalArgumentException("Collider " + collider + " does not belong to world " + world.getName());
+        }
+    }
+}
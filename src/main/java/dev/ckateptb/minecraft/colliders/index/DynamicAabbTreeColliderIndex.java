@@ -0,0 +1,528 @@
+package dev.ckateptb.minecraft.colliders.index;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.geometry.AxisAlignedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Dynamic bounding volume hierarchy (as in Box2D b2DynamicTree), suited for mixed collider sizes where a uniform grid breaks down.
+ * <p>
+ * Leaves store fattened bounds: a collider moving inside its fat bounds only refits its leaf,
+ * otherwise the leaf is reinserted with bounds extended in the direction of movement.
+ * Nodes live in parallel primitive arrays and the tree is kept balanced with AVL rotations.
+ */
+public class DynamicAabbTreeColliderIndex implements ColliderIndex {
+    public static final double DEFAULT_MARGIN = 0.5;
+    private static final double DISPLACEMENT_MULTIPLIER = 2;
+    private static final int NULL = -1;
+
+    private final double margin;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Int2IntOpenHashMap nodes = new Int2IntOpenHashMap();
+    // Six values per node: minX, minY, minZ, maxX, maxY, maxZ
+    private double[] bounds = new double[0];
+    private double[] tight = new double[0];
+    // Free nodes are chained through parent
+    private int[] parent = new int[0];
+    private int[] child1 = new int[0];
+    private int[] child2 = new int[0];
+    // -1 for free nodes, 0 for leaves
+    private int[] height = new int[0];
+    private int[] ids = new int[0];
+    private Collider[] colliders = new Collider[0];
+    private int capacity;
+    private int freeList = NULL;
+    private int root = NULL;
+    private int nextId;
+
+    public DynamicAabbTreeColliderIndex() {
+        this(DEFAULT_MARGIN);
+    }
+
+    public DynamicAabbTreeColliderIndex(double margin) {
+        this.margin = margin;
+        this.nodes.defaultReturnValue(NULL);
+    }
+
+    @Override
+    public int insert(Collider collider) {
+        lock.writeLock().lock();
+        try {
+            int id = nextId++;
+            int leaf = this.allocateNode();
+            ids[leaf] = id;
+            colliders[leaf] = collider;
+            this.setTight(leaf, collider.getBoundingBox());
+            this.fatten(leaf, 0, 0, 0);
+            this.insertLeaf(leaf);
+            nodes.put(id, leaf);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean update(int id, Collider collider) {
+        lock.writeLock().lock();
+        try {
+            int leaf = nodes.get(id);
+            if (leaf == NULL) return false;
+            int offset = leaf * 6;
+            double oldCenterX = (tight[offset] + tight[offset + 3]) * 0.5;
+            double oldCenterY = (tight[offset + 1] + tight[offset + 4]) * 0.5;
+            double oldCenterZ = (tight[offset + 2] + tight[offset + 5]) * 0.5;
+            colliders[leaf] = collider;
+            this.setTight(leaf, collider.getBoundingBox());
+            if (this.fatContainsTight(leaf)) return true;
+            this.removeLeaf(leaf);
+            this.fatten(leaf,
+                    (tight[offset] + tight[offset + 3]) * 0.5 - oldCenterX,
+                    (tight[offset + 1] + tight[offset + 4]) * 0.5 - oldCenterY,
+                    (tight[offset + 2] + tight[offset + 5]) * 0.5 - oldCenterZ);
+            this.insertLeaf(leaf);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(int id) {
+        lock.writeLock().lock();
+        try {
+            int leaf = nodes.remove(id);
+            if (leaf == NULL) return false;
+            this.removeLeaf(leaf);
+            this.freeNode(leaf);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Collider get(int id) {
+        lock.readLock().lock();
+        try {
+            int leaf = nodes.get(id);
+            return leaf == NULL ? null : colliders[leaf];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            nodes.clear();
+            bounds = new double[0];
+            tight = new double[0];
+            parent = new int[0];
+            child1 = new int[0];
+            child2 = new int[0];
+            height = new int[0];
+            ids = new int[0];
+            colliders = new Collider[0];
+            capacity = 0;
+            freeList = NULL;
+            root = NULL;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void query(Collider collider, Consumer<Collider> consumer) {
+        AxisAlignedBoundingBoxCollider box = collider.getBoundingBox();
+        ImmutableVector min = box.getMin();
+        ImmutableVector max = box.getMax();
+        List<Collider> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            this.forEachOverlap(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ(), leaf -> {
+                if (overlaps(tight, leaf, min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ())
+                        && collider.intersects(colliders[leaf])) {
+                    result.add(colliders[leaf]);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.forEach(consumer);
+    }
+
+    @Override
+    public void query(Vector point, Consumer<Collider> consumer) {
+        double x = point.getX(), y = point.getY(), z = point.getZ();
+        List<Collider> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            this.forEachOverlap(x, y, z, x, y, z, leaf -> {
+                if (overlaps(tight, leaf, x, y, z, x, y, z) && colliders[leaf].contains(point)) {
+                    result.add(colliders[leaf]);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.forEach(consumer);
+    }
+
+    @Override
+    public void queryRay(Vector origin, Vector direction, double distance, Consumer<Collider> consumer) {
+        double length = direction.length();
+        if (length == 0) return;
+        double originX = origin.getX(), originY = origin.getY(), originZ = origin.getZ();
+        double directionX = direction.getX() / length, directionY = direction.getY() / length, directionZ = direction.getZ() / length;
+        List<Collider> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (root == NULL) return;
+            IntArrayList stack = new IntArrayList();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                int node = stack.popInt();
+                double[] bounds = this.isLeaf(node) ? this.tight : this.bounds;
+                int offset = node * 6;
+                if (VectorMath.rayIntersectAABB(originX, originY, originZ, directionX, directionY, directionZ, distance,
+                        bounds[offset], bounds[offset + 1], bounds[offset + 2],
+                        bounds[offset + 3], bounds[offset + 4], bounds[offset + 5]) < 0) continue;
+                if (this.isLeaf(node)) {
+                    result.add(colliders[node]);
+                } else {
+                    stack.push(child1[node]);
+                    stack.push(child2[node]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.forEach(consumer);
+    }
+
+    @Override
+    public void queryPairs(BiConsumer<Collider, Collider> consumer) {
+        List<Collider> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int first = 0; first < capacity; first++) {
+                if (height[first] != 0) continue;
+                int offset = first * 6;
+                double minX = tight[offset], minY = tight[offset + 1], minZ = tight[offset + 2];
+                double maxX = tight[offset + 3], maxY = tight[offset + 4], maxZ = tight[offset + 5];
+                int firstLeaf = first;
+                this.forEachOverlap(minX, minY, minZ, maxX, maxY, maxZ, second -> {
+                    if (ids[second] > ids[firstLeaf]
+                            && overlaps(tight, second, minX, minY, minZ, maxX, maxY, maxZ)
+                            && colliders[firstLeaf].intersects(colliders[second])) {
+                        result.add(colliders[firstLeaf]);
+                        result.add(colliders[second]);
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < result.size(); i += 2) {
+            consumer.accept(result.get(i), result.get(i + 1));
+        }
+    }
+
+    private void forEachOverlap(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, IntConsumer consumer) {
+        if (root == NULL) return;
+        IntArrayList stack = new IntArrayList();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            int node = stack.popInt();
+            if (!overlaps(bounds, node, minX, minY, minZ, maxX, maxY, maxZ)) continue;
+            if (this.isLeaf(node)) {
+                consumer.accept(node);
+            } else {
+                stack.push(child1[node]);
+                stack.push(child2[node]);
+            }
+        }
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[root] = NULL;
+            return;
+        }
+        // Find the cheapest sibling by the surface area heuristic
+        int index = root;
+        while (!this.isLeaf(index)) {
+            double area = this.area(index);
+            double combinedArea = this.unionArea(index, leaf);
+            double cost = 2 * combinedArea;
+            double inheritanceCost = 2 * (combinedArea - area);
+            double cost1 = this.descendCost(child1[index], leaf) + inheritanceCost;
+            double cost2 = this.descendCost(child2[index], leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) break;
+            index = cost1 < cost2 ? child1[index] : child2[index];
+        }
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = this.allocateNode();
+        parent[newParent] = oldParent;
+        height[newParent] = height[sibling] + 1;
+        this.union(newParent, leaf, sibling);
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        this.refit(parent[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int leafParent = parent[leaf];
+        int grandParent = parent[leafParent];
+        int sibling = child1[leafParent] == leaf ? child2[leafParent] : child1[leafParent];
+        if (grandParent != NULL) {
+            if (child1[grandParent] == leafParent) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            this.freeNode(leafParent);
+            this.refit(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            this.freeNode(leafParent);
+        }
+    }
+
+    private void refit(int index) {
+        while (index != NULL) {
+            index = this.balance(index);
+            int first = child1[index];
+            int second = child2[index];
+            height[index] = 1 + FastMath.max(height[first], height[second]);
+            this.union(index, first, second);
+            index = parent[index];
+        }
+    }
+
+    // Rotates the higher child of A up if the subtree is imbalanced, returns the new root of the subtree
+    private int balance(int a) {
+        if (this.isLeaf(a) || height[a] < 2) return a;
+        int b = child1[a];
+        int c = child2[a];
+        int balance = height[c] - height[b];
+        if (balance > 1) {
+            int f = child1[c];
+            int g = child2[c];
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            this.replaceChild(parent[c], a, c);
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+                this.union(a, b, g);
+                this.union(c, a, f);
+                height[a] = 1 + FastMath.max(height[b], height[g]);
+                height[c] = 1 + FastMath.max(height[a], height[f]);
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+                this.union(a, b, f);
+                this.union(c, a, g);
+                height[a] = 1 + FastMath.max(height[b], height[f]);
+                height[c] = 1 + FastMath.max(height[a], height[g]);
+            }
+            return c;
+        }
+        if (balance < -1) {
+            int d = child1[b];
+            int e = child2[b];
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            this.replaceChild(parent[b], a, b);
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+                this.union(a, c, e);
+                this.union(b, a, d);
+                height[a] = 1 + FastMath.max(height[c], height[e]);
+                height[b] = 1 + FastMath.max(height[a], height[d]);
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+                this.union(a, c, d);
+                this.union(b, a, e);
+                height[a] = 1 + FastMath.max(height[c], height[d]);
+                height[b] = 1 + FastMath.max(height[a], height[e]);
+            }
+            return b;
+        }
+        return a;
+    }
+
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == NULL) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    private double descendCost(int child, int leaf) {
+        double unionArea = this.unionArea(child, leaf);
+        return this.isLeaf(child) ? unionArea : unionArea - this.area(child);
+    }
+
+    private double area(int node) {
+        int offset = node * 6;
+        return area(bounds[offset + 3] - bounds[offset], bounds[offset + 4] - bounds[offset + 1], bounds[offset + 5] - bounds[offset + 2]);
+    }
+
+    private double unionArea(int first, int second) {
+        int a = first * 6;
+        int b = second * 6;
+        return area(
+                FastMath.max(bounds[a + 3], bounds[b + 3]) - FastMath.min(bounds[a], bounds[b]),
+                FastMath.max(bounds[a + 4], bounds[b + 4]) - FastMath.min(bounds[a + 1], bounds[b + 1]),
+                FastMath.max(bounds[a + 5], bounds[b + 5]) - FastMath.min(bounds[a + 2], bounds[b + 2]));
+    }
+
+    private static double area(double x, double y, double z) {
+        return x * y + y * z + z * x;
+    }
+
+    private void union(int target, int first, int second) {
+        int t = target * 6;
+        int a = first * 6;
+        int b = second * 6;
+        for (int i = 0; i < 3; i++) {
+            bounds[t + i] = FastMath.min(bounds[a + i], bounds[b + i]);
+            bounds[t + i + 3] = FastMath.max(bounds[a + i + 3], bounds[b + i + 3]);
+        }
+    }
+
+    private void setTight(int leaf, AxisAlignedBoundingBoxCollider box) {
+        int offset = leaf * 6;
+        ImmutableVector min = box.getMin();
+        ImmutableVector max = box.getMax();
+        tight[offset] = min.getX();
+        tight[offset + 1] = min.getY();
+        tight[offset + 2] = min.getZ();
+        tight[offset + 3] = max.getX();
+        tight[offset + 4] = max.getY();
+        tight[offset + 5] = max.getZ();
+    }
+
+    // Fat bounds are the tight bounds plus margin, extended ahead of the movement
+    private void fatten(int leaf, double displacementX, double displacementY, double displacementZ) {
+        int offset = leaf * 6;
+        double[] displacement = {displacementX, displacementY, displacementZ};
+        for (int i = 0; i < 3; i++) {
+            double predicted = displacement[i] * DISPLACEMENT_MULTIPLIER;
+            bounds[offset + i] = tight[offset + i] - margin + FastMath.min(predicted, 0);
+            bounds[offset + i + 3] = tight[offset + i + 3] + margin + FastMath.max(predicted, 0);
+        }
+    }
+
+    private boolean fatContainsTight(int leaf) {
+        int offset = leaf * 6;
+        return bounds[offset] <= tight[offset] && bounds[offset + 1] <= tight[offset + 1] && bounds[offset + 2] <= tight[offset + 2]
+                && bounds[offset + 3] >= tight[offset + 3] && bounds[offset + 4] >= tight[offset + 4] && bounds[offset + 5] >= tight[offset + 5];
+    }
+
+    private static boolean overlaps(double[] bounds, int node, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        int offset = node * 6;
+        return bounds[offset] <= maxX && bounds[offset + 3] >= minX
+                && bounds[offset + 1] <= maxY && bounds[offset + 4] >= minY
+                && bounds[offset + 2] <= maxZ && bounds[offset + 5] >= minZ;
+    }
+
+    private boolean isLeaf(int node) {
+        return child1[node] == NULL;
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) this.grow();
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        colliders[node] = null;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        colliders[node] = null;
+        freeList = node;
+    }
+
+    private void grow() {
+        int oldCapacity = capacity;
+        capacity = oldCapacity == 0 ? 16 : oldCapacity * 2;
+        bounds = Arrays.copyOf(bounds, capacity * 6);
+        tight = Arrays.copyOf(tight, capacity * 6);
+        parent = Arrays.copyOf(parent, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        child2 = Arrays.copyOf(child2, capacity);
+        height = Arrays.copyOf(height, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        colliders = Arrays.copyOf(colliders, capacity);
+        for (int i = oldCapacity; i < capacity; i++) {
+            parent[i] = i + 1 < capacity ? i + 1 : NULL;
+            height[i] = -1;
+        }
+        freeList = oldCapacity;
+    }
+}
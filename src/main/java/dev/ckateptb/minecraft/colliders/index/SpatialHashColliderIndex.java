@@ -0,0 +1,297 @@
+package dev.ckateptb.minecraft.colliders.index;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.geometry.AxisAlignedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.math.VectorMath;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Uniform grid of cubic cells (chunk sized by default), each cell lists the ids of colliders whose bounds overlap it.
+ * Cells are addressed by packed long keys, so lookups never box coordinates.
+ */
+public class SpatialHashColliderIndex implements ColliderIndex {
+    public static final int CHUNK_CELL_SHIFT = 4;
+
+    private final int cellShift;
+    private final Long2ObjectOpenHashMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+    private final Int2ObjectOpenHashMap<Entry> entries = new Int2ObjectOpenHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int nextId;
+
+    public SpatialHashColliderIndex() {
+        this(CHUNK_CELL_SHIFT);
+    }
+
+    /**
+     * @param cellShift cells are {@code 1 << cellShift} blocks wide
+     */
+    public SpatialHashColliderIndex(int cellShift) {
+        this.cellShift = cellShift;
+    }
+
+    public static long cellKey(int cellX, int cellY, int cellZ) {
+        return ((long) cellX & 0xFFFFFF) << 40 | ((long) cellZ & 0xFFFFFF) << 16 | ((long) cellY & 0xFFFF);
+    }
+
+    @Override
+    public int insert(Collider collider) {
+        lock.writeLock().lock();
+        try {
+            int id = nextId++;
+            Entry entry = new Entry(id, collider);
+            entries.put(id, entry);
+            this.link(entry);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean update(int id, Collider collider) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry == null) return false;
+            Entry updated = new Entry(id, collider);
+            entries.put(id, updated);
+            if (entry.minCellX != updated.minCellX || entry.minCellY != updated.minCellY || entry.minCellZ != updated.minCellZ
+                    || entry.maxCellX != updated.maxCellX || entry.maxCellY != updated.maxCellY || entry.maxCellZ != updated.maxCellZ) {
+                this.unlink(entry);
+                this.link(updated);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(int id) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(id);
+            if (entry == null) return false;
+            this.unlink(entry);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Collider get(int id) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            return entry == null ? null : entry.collider;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            cells.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void query(Collider collider, Consumer<Collider> consumer) {
+        Entry query = new Entry(-1, collider);
+        List<Collider> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            this.forEachCandidate(query, entry -> {
+                if (entry.overlaps(query) && collider.intersects(entry.collider)) {
+                    result.add(entry.collider);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.forEach(consumer);
+    }
+
+    @Override
+    public void query(Vector point, Consumer<Collider> consumer) {
+        List<Collider> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntArrayList ids = cells.get(cellKey(this.toCell(point.getX()), this.toCell(point.getY()), this.toCell(point.getZ())));
+            if (ids != null) {
+                for (int i = 0; i < ids.size(); i++) {
+                    Entry entry = entries.get(ids.getInt(i));
+                    if (entry.contains(point.getX(), point.getY(), point.getZ()) && entry.collider.contains(point)) {
+                        result.add(entry.collider);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.forEach(consumer);
+    }
+
+    @Override
+    public void queryRay(Vector origin, Vector direction, double distance, Consumer<Collider> consumer) {
+        double length = direction.length();
+        if (length == 0) return;
+        double originX = origin.getX(), originY = origin.getY(), originZ = origin.getZ();
+        double directionX = direction.getX() / length, directionY = direction.getY() / length, directionZ = direction.getZ() / length;
+        double endX = originX + directionX * distance, endY = originY + directionY * distance, endZ = originZ + directionZ * distance;
+        Entry query = new Entry(-1, null,
+                FastMath.min(originX, endX), FastMath.min(originY, endY), FastMath.min(originZ, endZ),
+                FastMath.max(originX, endX), FastMath.max(originY, endY), FastMath.max(originZ, endZ));
+        List<Collider> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            this.forEachCandidate(query, entry -> {
+                if (VectorMath.rayIntersectAABB(originX, originY, originZ, directionX, directionY, directionZ, distance,
+                        entry.minX, entry.minY, entry.minZ, entry.maxX, entry.maxY, entry.maxZ) >= 0) {
+                    result.add(entry.collider);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.forEach(consumer);
+    }
+
+    @Override
+    public void queryPairs(BiConsumer<Collider, Collider> consumer) {
+        List<Collider> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Entry first : entries.values()) {
+                this.forEachCandidate(first, second -> {
+                    if (second.id > first.id && second.overlaps(first) && first.collider.intersects(second.collider)) {
+                        result.add(first.collider);
+                        result.add(second.collider);
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < result.size(); i += 2) {
+            consumer.accept(result.get(i), result.get(i + 1));
+        }
+    }
+
+    private void forEachCandidate(Entry query, Consumer<Entry> consumer) {
+        for (int x = query.minCellX; x <= query.maxCellX; x++) {
+            for (int y = query.minCellY; y <= query.maxCellY; y++) {
+                for (int z = query.minCellZ; z <= query.maxCellZ; z++) {
+                    IntArrayList ids = cells.get(cellKey(x, y, z));
+                    if (ids == null) continue;
+                    for (int i = 0; i < ids.size(); i++) {
+                        Entry entry = entries.get(ids.getInt(i));
+                        // Colliders spanning several cells are reported only from the first cell shared with the query
+                        if (x != FastMath.max(entry.minCellX, query.minCellX)
+                                || y != FastMath.max(entry.minCellY, query.minCellY)
+                                || z != FastMath.max(entry.minCellZ, query.minCellZ)) continue;
+                        consumer.accept(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void link(Entry entry) {
+        for (int x = entry.minCellX; x <= entry.maxCellX; x++) {
+            for (int y = entry.minCellY; y <= entry.maxCellY; y++) {
+                for (int z = entry.minCellZ; z <= entry.maxCellZ; z++) {
+                    cells.computeIfAbsent(cellKey(x, y, z), key -> new IntArrayList()).add(entry.id);
+                }
+            }
+        }
+    }
+
+    private void unlink(Entry entry) {
+        for (int x = entry.minCellX; x <= entry.maxCellX; x++) {
+            for (int y = entry.minCellY; y <= entry.maxCellY; y++) {
+                for (int z = entry.minCellZ; z <= entry.maxCellZ; z++) {
+                    long key = cellKey(x, y, z);
+                    IntArrayList ids = cells.get(key);
+                    if (ids == null) continue;
+                    ids.rem(entry.id);
+                    if (ids.isEmpty()) cells.remove(key);
+                }
+            }
+        }
+    }
+
+    private int toCell(double coordinate) {
+        return (int) FastMath.floor(coordinate) >> cellShift;
+    }
+
+    private class Entry {
+        private final int id;
+        private final Collider collider;
+        private final double minX, minY, minZ, maxX, maxY, maxZ;
+        private final int minCellX, minCellY, minCellZ, maxCellX, maxCellY, maxCellZ;
+
+        private Entry(int id, Collider collider) {
+            this(id, collider, collider.getBoundingBox());
+        }
+
+        private Entry(int id, Collider collider, AxisAlignedBoundingBoxCollider box) {
+            this(id, collider, box.getMin().getX(), box.getMin().getY(), box.getMin().getZ(),
+                    box.getMax().getX(), box.getMax().getY(), box.getMax().getZ());
+        }
+
+        private Entry(int id, Collider collider, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+            this.id = id;
+            this.collider = collider;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+            this.minCellX = toCell(minX);
+            this.minCellY = toCell(minY);
+            this.minCellZ = toCell(minZ);
+            this.maxCellX = toCell(maxX);
+            this.maxCellY = toCell(maxY);
+            this.maxCellZ = toCell(maxZ);
+        }
+
+        private boolean overlaps(Entry other) {
+            return minX <= other.maxX && maxX >= other.minX
+                    && minY <= other.maxY && maxY >= other.minY
+                    && minZ <= other.maxZ && maxZ >= other.minZ;
+        }
+
+        private boolean contains(double x, double y, double z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package dev.ckateptb.minecraft.colliders.listener;
+
+import dev.ckateptb.minecraft.colliders.index.ColliderWorld;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshotCache;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Drops the per world state of an unloaded world, the last entity snapshot and the persistent colliders,
+ * so neither keeps the world and its entities alive.
+ */
+public class WorldUnloadListener implements Listener {
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void on(WorldUnloadEvent event) {
+        World world = event.getWorld();
+        EntitySnapshotCache.unload(world);
+        ColliderWorld.unload(world);
+    }
+}
@@ -0,0 +1,206 @@
+package dev.ckateptb.minecraft.colliders.math;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Vector math on raw x/y/z components. Nothing here allocates, unlike {@link ImmutableVector},
+ * so narrow-phase checks of colliders are built on top of it.
+ */
+public class VectorMath {
+    public static double dot(double ax, double ay, double az, double bx, double by, double bz) {
+        return ax * bx + ay * by + az * bz;
+    }
+
+    public static double crossX(double ay, double az, double by, double bz) {
+        return ay * bz - az * by;
+    }
+
+    public static double crossY(double ax, double az, double bx, double bz) {
+        return az * bx - ax * bz;
+    }
+
+    public static double crossZ(double ax, double ay, double bx, double by) {
+        return ax * by - ay * bx;
+    }
+
+    public static double lengthSquared(double x, double y, double z) {
+        return x * x + y * y + z * z;
+    }
+
+    public static double distanceSquared(double ax, double ay, double az, double bx, double by, double bz) {
+        return lengthSquared(ax - bx, ay - by, az - bz);
+    }
+
+    public static boolean isInAABB(double x, double y, double z,
+                                   double minX, double minY, double minZ,
+                                   double maxX, double maxY, double maxZ) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    public static double distanceSquaredToAABB(double x, double y, double z,
+                                               double minX, double minY, double minZ,
+                                               double maxX, double maxY, double maxZ) {
+        double dx = x - LerpUtil.clamp(x, minX, maxX);
+        double dy = y - LerpUtil.clamp(y, minY, maxY);
+        double dz = z - LerpUtil.clamp(z, minZ, maxZ);
+        return lengthSquared(dx, dy, dz);
+    }
+
+    /**
+     * Squared distance from the point to the segment from start to start + delta.
+     */
+    public static double distanceSquaredToSegment(double x, double y, double z,
+                                                  double startX, double startY, double startZ,
+                                                  double deltaX, double deltaY, double deltaZ) {
+        double lengthSquared = lengthSquared(deltaX, deltaY, deltaZ);
+        double t = lengthSquared == 0 ? 0 : LerpUtil.clamp(dot(x - startX, y - startY, z - startZ, deltaX, deltaY, deltaZ) / lengthSquared, 0, 1);
+        return distanceSquared(x, y, z, startX + deltaX * t, startY + deltaY * t, startZ + deltaZ * t);
+    }
+
+    /**
+     * Squared distance between two segments given by their start and delta.
+     */
+    public static double segmentDistanceSquared(double firstX, double firstY, double firstZ,
+                                                double firstDeltaX, double firstDeltaY, double firstDeltaZ,
+                                                double secondX, double secondY, double secondZ,
+                                                double secondDeltaX, double secondDeltaY, double secondDeltaZ) {
+        double s = closestSegmentParameter(firstX, firstY, firstZ, firstDeltaX, firstDeltaY, firstDeltaZ,
+                secondX, secondY, secondZ, secondDeltaX, secondDeltaY, secondDeltaZ);
+        return distanceSquaredToSegment(firstX + firstDeltaX * s, firstY + firstDeltaY * s, firstZ + firstDeltaZ * s,
+                secondX, secondY, secondZ, secondDeltaX, secondDeltaY, secondDeltaZ);
+    }
+
+    /**
+     * Parameter (0 to 1) of the point of the first segment closest to the second one, see Ericson "Real-Time Collision
+     * Detection" 5.1.9. The closest point of the second segment is the one closest to that point.
+     */
+    public static double closestSegmentParameter(double firstX, double firstY, double firstZ,
+                                                 double firstDeltaX, double firstDeltaY, double firstDeltaZ,
+                                                 double secondX, double secondY, double secondZ,
+                                                 double secondDeltaX, double secondDeltaY, double secondDeltaZ) {
+        double rx = firstX - secondX;
+        double ry = firstY - secondY;
+        double rz = firstZ - secondZ;
+        double a = lengthSquared(firstDeltaX, firstDeltaY, firstDeltaZ);
+        if (a == 0) return 0;
+        double e = lengthSquared(secondDeltaX, secondDeltaY, secondDeltaZ);
+        double c = dot(firstDeltaX, firstDeltaY, firstDeltaZ, rx, ry, rz);
+        if (e == 0) return LerpUtil.clamp(-c / a, 0, 1);
+        double f = dot(secondDeltaX, secondDeltaY, secondDeltaZ, rx, ry, rz);
+        double b = dot(firstDeltaX, firstDeltaY, firstDeltaZ, secondDeltaX, secondDeltaY, secondDeltaZ);
+        double denominator = a * e - b * b;
+        // Parallel segments have no single closest pair, any start on the first one works
+        double s = denominator > 0 ? LerpUtil.clamp((b * f - c * e) / denominator, 0, 1) : 0;
+        double t = (b * s + f) / e;
+        if (t < 0) return LerpUtil.clamp(-c / a, 0, 1);
+        if (t > 1) return LerpUtil.clamp((b - c) / a, 0, 1);
+        return s;
+    }
+
+    /**
+     * Squared distance between the segment from start to start + delta and an axis aligned box, zero if they intersect.
+     * <p>
+     * Along the segment the distance is a convex piecewise quadratic, a new piece starts where the segment crosses
+     * a plane of the box. The minimum is the vertex of one piece, so only the pieces starting at 0
+     * and at the six crossings are solved.
+     */
+    public static double segmentDistanceSquaredToAABB(double startX, double startY, double startZ,
+                                                      double deltaX, double deltaY, double deltaZ,
+                                                      double minX, double minY, double minZ,
+                                                      double maxX, double maxY, double maxZ) {
+        double lowX = (minX - startX) / deltaX, highX = (maxX - startX) / deltaX;
+        double lowY = (minY - startY) / deltaY, highY = (maxY - startY) / deltaY;
+        double lowZ = (minZ - startZ) / deltaZ, highZ = (maxZ - startZ) / deltaZ;
+        double result = Double.MAX_VALUE;
+        for (int i = 0; i < 7 && result > 0; i++) {
+            double t = switch (i) {
+                case 0 -> 0;
+                case 1 -> lowX;
+                case 2 -> highX;
+                case 3 -> lowY;
+                case 4 -> highY;
+                case 5 -> lowZ;
+                default -> highZ;
+            };
+            // Infinite or NaN when the segment is parallel to the planes
+            if (!(t >= 0 && t <= 1)) continue;
+            // Axes outside of the box just after t, each adds (start + delta * t - bound)^2 to the piece
+            double boundX = activeBound(t, startX, deltaX, minX, maxX, lowX, highX);
+            double boundY = activeBound(t, startY, deltaY, minY, maxY, lowY, highY);
+            double boundZ = activeBound(t, startZ, deltaZ, minZ, maxZ, lowZ, highZ);
+            double slope = 0;
+            double curvature = 0;
+            if (boundX == boundX) {
+                slope += (startX - boundX) * deltaX;
+                curvature += deltaX * deltaX;
+            }
+            if (boundY == boundY) {
+                slope += (startY - boundY) * deltaY;
+                curvature += deltaY * deltaY;
+            }
+            if (boundZ == boundZ) {
+                slope += (startZ - boundZ) * deltaZ;
+                curvature += deltaZ * deltaZ;
+            }
+            double vertex = curvature == 0 ? t : LerpUtil.clamp(-slope / curvature, 0, 1);
+            result = FastMath.min(result, distanceSquaredToAABB(
+                    startX + deltaX * vertex, startY + deltaY * vertex, startZ + deltaZ * vertex,
+                    minX, minY, minZ, maxX, maxY, maxZ));
+        }
+        return result;
+    }
+
+    // Bound of the box the segment is outside of on one axis just after t, NaN while it is between both bounds.
+    // Compared by the crossing parameters themselves, so a piece starting at a crossing is classified consistently
+    private static double activeBound(double t, double start, double delta, double min, double max, double low, double high) {
+        if (delta > 0) return t < low ? min : t >= high ? max : Double.NaN;
+        if (delta < 0) return t >= low ? min : t < high ? max : Double.NaN;
+        return start < min ? min : start > max ? max : Double.NaN;
+    }
+
+    /**
+     * Slab test of a ray segment against an axis aligned box.
+     *
+     * @return distance along the normalized direction where the segment enters the box
+     * (0 if it starts inside) or -1 if it misses
+     */
+    public static double rayIntersectAABB(double originX, double originY, double originZ,
+                                          double directionX, double directionY, double directionZ,
+                                          double maxDistance,
+                                          double minX, double minY, double minZ,
+                                          double maxX, double maxY, double maxZ) {
+        double near = 0;
+        double far = maxDistance;
+        if (directionX == 0) {
+            if (originX < minX || originX > maxX) return -1;
+        } else {
+            double inverse = 1 / directionX;
+            double first = (minX - originX) * inverse;
+            double second = (maxX - originX) * inverse;
+            near = FastMath.max(near, FastMath.min(first, second));
+            far = FastMath.min(far, FastMath.max(first, second));
+            if (near > far) return -1;
+        }
+        if (directionY == 0) {
+            if (originY < minY || originY > maxY) return -1;
+        } else {
+            double inverse = 1 / directionY;
+            double first = (minY - originY) * inverse;
+            double second = (maxY - originY) * inverse;
+            near = FastMath.max(near, FastMath.min(first, second));
+            far = FastMath.min(far, FastMath.max(first, second));
+            if (near > far) return -1;
+        }
+        if (directionZ == 0) {
+            if (originZ < minZ || originZ > maxZ) return -1;
+        } else {
+            double inverse = 1 / directionZ;
+            double first = (minZ - originZ) * inverse;
+            double second = (maxZ - originZ) * inverse;
+            near = FastMath.max(near, FastMath.min(first, second));
+            far = FastMath.min(far, FastMath.max(first, second));
+            if (near > far) return -1;
+        }
+        return near;
+    }
+}
@@ -0,0 +1,147 @@
+package dev.ckateptb.minecraft.colliders.math;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.geometry.AxisAlignedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.geometry.CapsuleCollider;
+import dev.ckateptb.minecraft.colliders.geometry.CombinedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.geometry.RayTraceCollider;
+import dev.ckateptb.minecraft.colliders.metrics.ColliderQueryEvent;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Walks the blocks touched by a collider. Only the block range of its bounds is visited, or the blocks along the
+ * segment of a capsule when those are fewer, or the bounds of every child of a spread out union.
+ * {@link #forEachBlock(Collider, LongConsumer)} tests every cell with primitive bounds, while
+ * {@link #forEachCandidate(Collider, LongConsumer)} reports the cells untested for callers checking block shapes.
+ * Blocks are reported as keys packed by {@link Block#getBlockKey(int, int, int)}.
+ */
+public class VoxelIterator {
+    // Collision shapes of fences, walls and closed fence gates reach half a block above their block
+    private static final double SHAPE_OVERHANG = 0.5;
+
+    /**
+     * @return the number of blocks tested
+     */
+    public static long forEachBlock(Collider collider, LongConsumer consumer) {
+        return forEachBlock(collider, true, consumer);
+    }
+
+    /**
+     * Blocks that may touch the collider, without testing them against it. Callers testing the exact shape
+     * of a block use it, since a block shape may reach past the block itself: the walk starts half a block lower,
+     * so fences and walls below the collider whose shape reaches into it are reported too.
+     *
+     * @return the number of blocks reported
+     */
+    public static long forEachCandidate(Collider collider, LongConsumer consumer) {
+        return forEachBlock(collider, false, consumer);
+    }
+
+    private static long forEachBlock(Collider collider, boolean test, LongConsumer consumer) {
+        if (collider instanceof CombinedBoundingBoxCollider combined && combined.isSpread()) {
+            return forEachBlock(combined, test, consumer);
+        }
+        AxisAlignedBoundingBoxCollider bounds = collider.getBoundingBox();
+        ImmutableVector min = bounds.getMin();
+        ImmutableVector max = bounds.getMax();
+        double overhang = test ? 0 : SHAPE_OVERHANG;
+        // Block x spans [x, x + 1], it touches the bounds when x + 1 >= min and x <= max
+        int minX = (int) FastMath.ceil(min.getX() - 1);
+        int minY = (int) FastMath.ceil(min.getY() - 1 - overhang);
+        int minZ = (int) FastMath.ceil(min.getZ() - 1);
+        int maxX = (int) FastMath.floor(max.getX());
+        int maxY = (int) FastMath.floor(max.getY());
+        int maxZ = (int) FastMath.floor(max.getZ());
+        long volume = FastMath.max(0L, maxX - minX + 1L) * FastMath.max(0L, maxY - minY + 1L) * FastMath.max(0L, maxZ - minZ + 1L);
+        CapsuleCollider capsule = collider instanceof CapsuleCollider value ? value
+                : collider instanceof RayTraceCollider ray ? ray.getCapsuleCollider() : null;
+        if (capsule != null && traversalCost(capsule, overhang) < volume) {
+            return forEachBlock(collider, capsule, overhang, test, consumer);
+        }
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    if (!test || collider.intersects(x, y, z, x + 1, y + 1, z + 1)) {
+                        consumer.accept(Block.getBlockKey(x, y, z));
+                    }
+                }
+            }
+        }
+        return volume;
+    }
+
+    // Children of a union that are apart are walked one by one, blocks two children share are reported once
+    private static long forEachBlock(CombinedBoundingBoxCollider combined, boolean test, LongConsumer consumer) {
+        LongOpenHashSet seen = new LongOpenHashSet();
+        long visited = 0;
+        for (int i = 0; i < combined.getColliderCount(); i++) {
+            visited += forEachBlock(combined.getCollider(i), test, key -> {
+                if (seen.add(key)) consumer.accept(key);
+            });
+        }
+        return visited;
+    }
+
+    // A long diagonal capsule fills a small part of its bounds, the blocks within its radius of the segment
+    // are found by a thick voxel traversal of the segment instead. A block whose shape reaches the overhang above it
+    // is within the radius grown by the overhang
+    private static long forEachBlock(Collider collider, CapsuleCollider capsule, double overhang, boolean test, LongConsumer consumer) {
+        ImmutableVector start = capsule.getStart();
+        ImmutableVector end = capsule.getEnd();
+        long[] visited = new long[1];
+        VoxelTraversal.traverse(start.getX(), start.getY(), start.getZ(),
+                end.getX() - start.getX(), end.getY() - start.getY(), end.getZ() - start.getZ(),
+                capsule.getLength(), capsule.getRadius() + overhang, (x, y, z, distance, face) -> {
+                    visited[0]++;
+                    if (!test || collider.intersects(x, y, z, x + 1, y + 1, z + 1)) {
+                        consumer.accept(Block.getBlockKey(x, y, z));
+                    }
+                    return true;
+                });
+        return visited[0];
+    }
+
+    // Blocks around every block the segment crosses, the traversal collects them for each step of its center walk
+    private static long traversalCost(CapsuleCollider capsule, double overhang) {
+        ImmutableVector start = capsule.getStart();
+        ImmutableVector end = capsule.getEnd();
+        long steps = (long) FastMath.ceil(FastMath.abs(end.getX() - start.getX()))
+                + (long) FastMath.ceil(FastMath.abs(end.getY() - start.getY()))
+                + (long) FastMath.ceil(FastMath.abs(end.getZ() - start.getZ())) + 1;
+        long side = 2L * (long) FastMath.ceil(capsule.getRadius() + overhang) + 1;
+        return steps * side * side * side;
+    }
+
+    /**
+     * Centers of the blocks touched by the collider, computed on subscription.
+     */
+    public static Flux<Location> locations(Collider collider) {
+        World world = collider.getWorld();
+        CollisionMetrics.Recorder recorder = CollisionMetrics.recorder(CollisionMetrics.Operation.AFFECT_LOCATIONS, collider);
+        return Flux.<Location>create(sink -> {
+            ColliderQueryEvent event = new ColliderQueryEvent();
+            event.begin();
+            CollisionMetrics.Walk walk = recorder.start();
+            long[] accepted = new long[1];
+            long scanned = forEachBlock(collider, key -> {
+                accepted[0]++;
+                walk.next(sink, new Location(world,
+                        Block.getBlockKeyX(key) + 0.5,
+                        Block.getBlockKeyY(key) + 0.5,
+                        Block.getBlockKeyZ(key) + 0.5));
+            });
+            walk.end();
+            event.report("affectLocations", collider, scanned, accepted[0], scanned);
+            sink.complete();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,173 @@
+package dev.ckateptb.minecraft.colliders.math;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+import java.util.Arrays;
+
+/**
+ * Blocks crossed by a ray in order of distance, see Amanatides and Woo "A Fast Voxel Traversal Algorithm for Ray Tracing".
+ * <p>
+ * A thick ray visits every block whose bounds, grown by the radius, are crossed by the ray.
+ * Such a block is always within {@code ceil(radius)} blocks of the block the center of the ray is in at that distance,
+ * so candidates are collected around the center walk and reported once the center has passed their entry distance.
+ */
+public class VoxelTraversal {
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param distance distance along the ray where it enters the block, 0 for the block it starts in
+         * @param face     face of the block the ray enters through, {@link BlockFace#SELF} if it starts inside
+         * @return false to stop the traversal
+         */
+        boolean visit(int x, int y, int z, double distance, BlockFace face);
+    }
+
+    public static void traverse(double originX, double originY, double originZ,
+                                double directionX, double directionY, double directionZ,
+                                double maxDistance, double radius, Visitor visitor) {
+        double length = FastMath.sqrt(VectorMath.lengthSquared(directionX, directionY, directionZ));
+        if (length == 0) {
+            walk(originX, originY, originZ, 0, 0, 0, 0, radius, visitor);
+        } else {
+            walk(originX, originY, originZ, directionX / length, directionY / length, directionZ / length, maxDistance, radius, visitor);
+        }
+    }
+
+    private static void walk(double originX, double originY, double originZ,
+                             double directionX, double directionY, double directionZ,
+                             double maxDistance, double radius, Visitor visitor) {
+        int x = (int) FastMath.floor(originX);
+        int y = (int) FastMath.floor(originY);
+        int z = (int) FastMath.floor(originZ);
+        int stepX = (int) FastMath.signum(directionX);
+        int stepY = (int) FastMath.signum(directionY);
+        int stepZ = (int) FastMath.signum(directionZ);
+        double deltaX = stepX == 0 ? Double.POSITIVE_INFINITY : FastMath.abs(1 / directionX);
+        double deltaY = stepY == 0 ? Double.POSITIVE_INFINITY : FastMath.abs(1 / directionY);
+        double deltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : FastMath.abs(1 / directionZ);
+        double nextX = stepX == 0 ? Double.POSITIVE_INFINITY : ((stepX > 0 ? x + 1 : x) - originX) / directionX;
+        double nextY = stepY == 0 ? Double.POSITIVE_INFINITY : ((stepY > 0 ? y + 1 : y) - originY) / directionY;
+        double nextZ = stepZ == 0 ? Double.POSITIVE_INFINITY : ((stepZ > 0 ? z + 1 : z) - originZ) / directionZ;
+        Footprint footprint = radius > 0 ? new Footprint(originX, originY, originZ, directionX, directionY, directionZ, maxDistance, radius) : null;
+        double distance = 0;
+        BlockFace face = BlockFace.SELF;
+        while (distance <= maxDistance) {
+            double exit = FastMath.min(nextX, FastMath.min(nextY, nextZ));
+            if (footprint == null) {
+                if (!visitor.visit(x, y, z, distance, face)) return;
+            } else {
+                footprint.collect(x, y, z);
+                if (!footprint.flush(FastMath.min(exit, maxDistance), visitor)) return;
+            }
+            if (exit == Double.POSITIVE_INFINITY) return;
+            if (nextX < nextY && nextX < nextZ) {
+                x += stepX;
+                distance = nextX;
+                nextX += deltaX;
+                face = stepX > 0 ? BlockFace.WEST : BlockFace.EAST;
+            } else if (nextY < nextZ) {
+                y += stepY;
+                distance = nextY;
+                nextY += deltaY;
+                face = stepY > 0 ? BlockFace.DOWN : BlockFace.UP;
+            } else {
+                z += stepZ;
+                distance = nextZ;
+                nextZ += deltaZ;
+                face = stepZ > 0 ? BlockFace.NORTH : BlockFace.SOUTH;
+            }
+        }
+    }
+
+    // Blocks around the center walk, kept sorted by entry distance until they can be reported
+    private static class Footprint {
+        private final double originX, originY, originZ;
+        private final double directionX, directionY, directionZ;
+        private final double maxDistance;
+        private final double radius;
+        private final int reach;
+        private final LongOpenHashSet seen = new LongOpenHashSet();
+        private long[] keys = new long[16];
+        private double[] distances = new double[16];
+        private BlockFace[] faces = new BlockFace[16];
+        private int size;
+
+        private Footprint(double originX, double originY, double originZ,
+                          double directionX, double directionY, double directionZ,
+                          double maxDistance, double radius) {
+            this.originX = originX;
+            this.originY = originY;
+            this.originZ = originZ;
+            this.directionX = directionX;
+            this.directionY = directionY;
+            this.directionZ = directionZ;
+            this.maxDistance = maxDistance;
+            this.radius = radius;
+            this.reach = (int) FastMath.ceil(radius);
+        }
+
+        private void collect(int centerX, int centerY, int centerZ) {
+            for (int x = centerX - reach; x <= centerX + reach; x++) {
+                for (int y = centerY - reach; y <= centerY + reach; y++) {
+                    for (int z = centerZ - reach; z <= centerZ + reach; z++) {
+                        long key = Block.getBlockKey(x, y, z);
+                        if (seen.contains(key)) continue;
+                        double distance = VectorMath.rayIntersectAABB(originX, originY, originZ,
+                                directionX, directionY, directionZ, maxDistance,
+                                x - radius, y - radius, z - radius, x + 1 + radius, y + 1 + radius, z + 1 + radius);
+                        if (distance < 0) continue;
+                        seen.add(key);
+                        this.insert(key, distance, this.face(x, y, z, distance));
+                    }
+                }
+            }
+        }
+
+        private boolean flush(double limit, Visitor visitor) {
+            int count = 0;
+            while (count < size && distances[count] <= limit) {
+                long key = keys[count];
+                if (!visitor.visit(Block.getBlockKeyX(key), Block.getBlockKeyY(key), Block.getBlockKeyZ(key), distances[count], faces[count])) {
+                    return false;
+                }
+                count++;
+            }
+            size -= count;
+            System.arraycopy(keys, count, keys, 0, size);
+            System.arraycopy(distances, count, distances, 0, size);
+            System.arraycopy(faces, count, faces, 0, size);
+            return true;
+        }
+
+        private void insert(long key, double distance, BlockFace face) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+                faces = Arrays.copyOf(faces, size * 2);
+            }
+            int index = size;
+            while (index > 0 && distances[index - 1] > distance) index--;
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(distances, index, distances, index + 1, size - index);
+            System.arraycopy(faces, index, faces, index + 1, size - index);
+            keys[index] = key;
+            distances[index] = distance;
+            faces[index] = face;
+            size++;
+        }
+
+        // The grown block is entered through the slab that is crossed last
+        private BlockFace face(int x, int y, int z, double distance) {
+            if (distance == 0) return BlockFace.SELF;
+            double enterX = directionX == 0 ? Double.NEGATIVE_INFINITY : ((directionX > 0 ? x - radius : x + 1 + radius) - originX) / directionX;
+            double enterY = directionY == 0 ? Double.NEGATIVE_INFINITY : ((directionY > 0 ? y - radius : y + 1 + radius) - originY) / directionY;
+            double enterZ = directionZ == 0 ? Double.NEGATIVE_INFINITY : ((directionZ > 0 ? z - radius : z + 1 + radius) - originZ) / directionZ;
+            if (enterX >= enterY && enterX >= enterZ) return directionX > 0 ? BlockFace.WEST : BlockFace.EAST;
+            if (enterY >= enterZ) return directionY > 0 ? BlockFace.DOWN : BlockFace.UP;
+            return directionZ > 0 ? BlockFace.NORTH : BlockFace.SOUTH;
+        }
+    }
+}
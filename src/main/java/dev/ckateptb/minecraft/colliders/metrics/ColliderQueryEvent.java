@@ -0,0 +1,43 @@
+package dev.ckateptb.minecraft.colliders.metrics;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event of a collider query that walks blocks or entities: the {@code affect} methods and the ray
+ * lookups of {@code RayTraceCollider}. Disabled by default, enable {@code dev.ckateptb.colliders.ColliderQuery}
+ * in the recording settings to capture it. A disabled event is never written.
+ */
+@Name("dev.ckateptb.colliders.ColliderQuery")
+@Label("Collider Query")
+@Category("Colliders")
+@Description("Blocks and entities a collider query walked")
+@Enabled(false)
+public class ColliderQueryEvent extends Event {
+    @Label("Operation")
+    private String operation;
+    @Label("Shape")
+    private String shape;
+    @Label("Candidates")
+    @Description("Blocks or entities tested against the shape")
+    private long candidates;
+    @Label("Accepted")
+    @Description("Blocks or entities the query returned")
+    private long accepted;
+    @Label("Blocks Scanned")
+    private long blocksScanned;
+
+    /**
+     * Ends the event started by {@link #begin()} and writes it when the recording asks for it.
+     */
+    public void report(String operation, Collider collider, long candidates, long accepted, long blocksScanned) {
+        this.end();
+        if (!this.shouldCommit()) return;
+        this.operation = operation;
+        this.shape = collider.getClass().getSimpleName();
+        this.candidates = candidates;
+        this.accepted = accepted;
+        this.blocksScanned = blocksScanned;
+        this.commit();
+    }
+}
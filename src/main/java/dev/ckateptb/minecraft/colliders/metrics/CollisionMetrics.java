@@ -0,0 +1,243 @@
+package dev.ckateptb.minecraft.colliders.metrics;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.dispatch.ShapePairTable;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.plugin.java.JavaPlugin;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Call counts and latency histograms of the collider hot paths: {@code intersects} per shape pair,
+ * {@code intersectsMany} batches per shape of the receiver and of the candidates, and the block and entity walks
+ * of the {@code affect} methods and the collision pipeline per shape. Disabled by default, a disabled path
+ * only reads a volatile flag.
+ * <p>
+ * Intersection tests made by combined colliders for their children are recorded as well, and so are the single tests
+ * a batch falls back to for shapes without a fast path.
+ * Attributing calls to plugins walks the stack of every recorded call, it is meant for short diagnosis.
+ */
+public class CollisionMetrics {
+    private static final ShapePairTable<LatencyHistogram> INTERSECTS = new ShapePairTable<>();
+    private static final ShapePairTable<LatencyHistogram> BATCHES = new ShapePairTable<>();
+    // Batches whose candidates are of more than one shape, by the class of the receiver
+    private static final Map<Class<?>, LatencyHistogram> MIXED_BATCHES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, LatencyHistogram[]> AFFECTS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> PLUGINS = new ConcurrentHashMap<>();
+    private static final List<LatencyHistogram> HISTOGRAMS = new CopyOnWriteArrayList<>();
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    private static final ClassLoader OWN_LOADER = CollisionMetrics.class.getClassLoader();
+    private static final ClassValue<String> PROVIDING_PLUGINS = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            try {
+                return JavaPlugin.getProvidingPlugin(type).getName();
+            } catch (IllegalArgumentException | IllegalStateException exception) {
+                return "";
+            }
+        }
+    };
+    private static volatile boolean enabled;
+    private static volatile boolean attributePlugins;
+
+    public enum Operation {
+        AFFECT_ENTITIES("affectEntities"),
+        AFFECT_BLOCKS("affectBlocks"),
+        AFFECT_LOCATIONS("affectLocations"),
+        AFFECT_BLOCK_SNAPSHOTS("affectBlockSnapshots");
+
+        private final String method;
+
+        Operation(String method) {
+            this.method = method;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        CollisionMetrics.enabled = enabled;
+    }
+
+    public static boolean isAttributePlugins() {
+        return attributePlugins;
+    }
+
+    public static void setAttributePlugins(boolean attributePlugins) {
+        CollisionMetrics.attributePlugins = attributePlugins;
+    }
+
+    /**
+     * Every histogram recorded so far, plugin histograms are named {@code plugin <name>}.
+     */
+    public static List<LatencyHistogram> getHistograms() {
+        return new ArrayList<>(HISTOGRAMS);
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    public static void recordIntersects(Collider first, Collider second, long nanos) {
+        int firstOrdinal = first.getShapeOrdinal();
+        int secondOrdinal = second.getShapeOrdinal();
+        int low = FastMath.min(firstOrdinal, secondOrdinal);
+        int high = FastMath.max(firstOrdinal, secondOrdinal);
+        LatencyHistogram histogram = INTERSECTS.get(low, high);
+        if (histogram == null) {
+            boolean ordered = firstOrdinal <= secondOrdinal;
+            histogram = intersects(low, high, (ordered ? first : second).getClass(), (ordered ? second : first).getClass());
+        }
+        histogram.record(nanos);
+        if (attributePlugins) plugin().record(nanos);
+    }
+
+    /**
+     * Records one {@code intersectsMany} call as one sample, under the shape of the receiver and the shape
+     * of the candidates, or {@code mixed} when they are of more than one shape.
+     */
+    public static void recordIntersectsMany(Collider first, Collider[] others, long nanos) {
+        int firstOrdinal = first.getShapeOrdinal();
+        int secondOrdinal = others.length == 0 ? firstOrdinal : others[0].getShapeOrdinal();
+        for (int i = 1; i < others.length && secondOrdinal != -1; i++) {
+            if (others[i].getShapeOrdinal() != secondOrdinal) secondOrdinal = -1;
+        }
+        LatencyHistogram histogram;
+        if (secondOrdinal == -1) {
+            histogram = MIXED_BATCHES.computeIfAbsent(first.getClass(),
+                    type -> register("intersectsMany " + type.getSimpleName() + " x mixed"));
+        } else {
+            histogram = BATCHES.get(firstOrdinal, secondOrdinal);
+            if (histogram == null) {
+                histogram = batches(firstOrdinal, secondOrdinal, first.getClass(), (others.length == 0 ? first : others[0]).getClass());
+            }
+        }
+        histogram.record(nanos);
+        if (attributePlugins) plugin().record(nanos);
+    }
+
+    /**
+     * Recorder of an {@code affect} walk, taken when its flux is created so the calling plugin is known.
+     * It records nothing while metrics are disabled.
+     */
+    public static Recorder recorder(Operation operation, Collider collider) {
+        if (!enabled) return Recorder.DISABLED;
+        LatencyHistogram histogram = AFFECTS.computeIfAbsent(collider.getClass(), CollisionMetrics::affects)[operation.ordinal()];
+        return new Recorder(histogram, attributePlugins ? plugin() : null);
+    }
+
+    /**
+     * Records the work of the walks of one {@code affect} flux. Only the walk itself is measured:
+     * waiting for the main thread or a worker is not, and neither is the time the subscriber spends on emitted values.
+     */
+    public static class Recorder {
+        private static final Recorder DISABLED = new Recorder(null, null);
+
+        private final LatencyHistogram histogram;
+        private final LatencyHistogram plugin;
+
+        private Recorder(LatencyHistogram histogram, LatencyHistogram plugin) {
+            this.histogram = histogram;
+            this.plugin = plugin;
+        }
+
+        /**
+         * Starts measuring one walk, called where the walk begins.
+         */
+        public Walk start() {
+            return histogram == null ? Walk.DISABLED : new Walk(this);
+        }
+    }
+
+    public static class Walk {
+        private static final Walk DISABLED = new Walk(null);
+
+        private final Recorder recorder;
+        private final long start;
+        private long emitting;
+
+        private Walk(Recorder recorder) {
+            this.recorder = recorder;
+            this.start = recorder == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Emits the value, the time the subscriber takes for it is not counted.
+         */
+        public <T> void next(FluxSink<T> sink, T value) {
+            if (recorder == null) {
+                sink.next(value);
+                return;
+            }
+            long emit = System.nanoTime();
+            sink.next(value);
+            emitting += System.nanoTime() - emit;
+        }
+
+        public void end() {
+            if (recorder == null) return;
+            long nanos = System.nanoTime() - start - emitting;
+            recorder.histogram.record(nanos);
+            if (recorder.plugin != null) recorder.plugin.record(nanos);
+        }
+    }
+
+    private static synchronized LatencyHistogram intersects(int low, int high, Class<?> lowType, Class<?> highType) {
+        LatencyHistogram histogram = INTERSECTS.get(low, high);
+        if (histogram == null) {
+            histogram = register("intersects " + lowType.getSimpleName() + " x " + highType.getSimpleName());
+            INTERSECTS.put(low, high, histogram);
+        }
+        return histogram;
+    }
+
+    private static synchronized LatencyHistogram batches(int first, int second, Class<?> firstType, Class<?> secondType) {
+        LatencyHistogram histogram = BATCHES.get(first, second);
+        if (histogram == null) {
+            histogram = register("intersectsMany " + firstType.getSimpleName() + " x " + secondType.getSimpleName());
+            BATCHES.put(first, second, histogram);
+        }
+        return histogram;
+    }
+
+    private static LatencyHistogram[] affects(Class<?> type) {
+        Operation[] operations = Operation.values();
+        LatencyHistogram[] histograms = new LatencyHistogram[operations.length];
+        for (Operation operation : operations) {
+            histograms[operation.ordinal()] = register(operation.method + " " + type.getSimpleName());
+        }
+        return histograms;
+    }
+
+    private static LatencyHistogram register(String name) {
+        LatencyHistogram histogram = new LatencyHistogram(name);
+        HISTOGRAMS.add(histogram);
+        return histogram;
+    }
+
+    // The first plugin on the stack other than Colliders, Colliders itself when it is the only one
+    private static LatencyHistogram plugin() {
+        String name = STACK_WALKER.walk(frames -> {
+            String own = null;
+            for (Iterator<StackWalker.StackFrame> iterator = frames.iterator(); iterator.hasNext(); ) {
+                Class<?> type = iterator.next().getDeclaringClass();
+                String plugin = PROVIDING_PLUGINS.get(type);
+                if (plugin.isEmpty()) continue;
+                if (type.getClassLoader() != OWN_LOADER) return plugin;
+                own = plugin;
+            }
+            return own == null ? "unknown" : own;
+        });
+        return PLUGINS.computeIfAbsent(name, key -> register("plugin " + key));
+    }
+}
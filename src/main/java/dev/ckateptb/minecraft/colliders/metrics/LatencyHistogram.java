@@ -0,0 +1,114 @@
+package dev.ckateptb.minecraft.colliders.metrics;
+
+import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count and latency of one measured path, in nanoseconds.
+ * <p>
+ * Buckets are log-linear in the style of HdrHistogram: exact below 8 ns, above that every power of two is split in
+ * four, so a percentile is at most a quarter above the real value. Recording only adds to striped counters.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR = 8;
+    private static final int SUB_BUCKETS = 4;
+    // 2^40 ns is about eighteen minutes, longer calls share the last bucket
+    private static final int MAX_EXPONENT = 39;
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 2) * SUB_BUCKETS;
+
+    @Getter
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        nanos = FastMath.max(0, nanos);
+        buckets[bucket(nanos)].increment();
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long count = this.getCount();
+        return count == 0 ? 0 : (double) this.getTotalNanos() / count;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0 to 100), zero when nothing was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) return 0;
+        long rank = FastMath.max(1, (long) FastMath.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return FastMath.min(upperBound(i), this.getMaxNanos());
+        }
+        return this.getMaxNanos();
+    }
+
+    /**
+     * Not atomic, calls recorded while resetting may be partly kept.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < LINEAR) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        return LINEAR + (exponent - 3) * SUB_BUCKETS + (int) ((nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        int exponent = 3 + (bucket - LINEAR) / SUB_BUCKETS;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" + "name='" + name + '\'' + ", count=" + this.getCount() + ", meanNanos=" + this.getMeanNanos() + '}';
+    }
+}
@@ -0,0 +1,234 @@
+package dev.ckateptb.minecraft.colliders.pipeline;
+
+import dev.ckateptb.common.tableclothcontainer.annotation.Component;
+import dev.ckateptb.minecraft.atom.Atom;
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import dev.ckateptb.minecraft.colliders.snapshot.BlockSnapshot;
+import dev.ckateptb.minecraft.colliders.snapshot.ChunkSnapshotCache;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshot;
+import dev.ckateptb.minecraft.colliders.snapshot.EntitySnapshotCache;
+import dev.ckateptb.minecraft.nicotine.annotation.Schedule;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.entity.Entity;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers collider queries of a tick together instead of one reactive chain per query.
+ * <p>
+ * Queries submitted from any thread are queued. On the next tick the world state they read is captured once on the
+ * main thread, until the tick budget is spent, the rest waits for the following tick. At least one query is captured
+ * every tick, so a small budget or a slow capture never starves the queue. Broad and narrow phase of the
+ * batch then run as fork join tasks, and all results are delivered back on the main thread at once.
+ */
+@Getter
+@Component
+public class CollisionPipeline {
+    // Queries answered by one task without forking further
+    private static final int SPLIT_THRESHOLD = 4;
+
+    @Getter(AccessLevel.NONE)
+    private final ForkJoinPool pool = new ForkJoinPool(FastMath.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    @Getter(AccessLevel.NONE)
+    private final Queue<Query<?>> queue = new ConcurrentLinkedQueue<>();
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    /**
+     * Main thread time a tick may spend capturing world state for queued queries, the first query is always captured.
+     */
+    private volatile Duration tickBudget = Duration.ofMillis(5);
+    private volatile int lastBatchSize;
+    private volatile long lastCaptureNanos;
+    private volatile long lastComputeNanos;
+    @Getter(AccessLevel.NONE)
+    private volatile boolean shutdown;
+
+    /**
+     * Entities whose bounding box intersects the collider, delivered on the main thread.
+     */
+    public Mono<List<Entity>> entities(Collider collider) {
+        CollisionMetrics.Recorder recorder = CollisionMetrics.recorder(CollisionMetrics.Operation.AFFECT_ENTITIES, collider);
+        return this.submit(new Query<List<Entity>>() {
+            private EntitySnapshot snapshot;
+
+            @Override
+            void capture() {
+                this.snapshot = EntitySnapshotCache.capture(collider.getWorld());
+            }
+
+            @Override
+            List<Entity> compute() {
+                CollisionMetrics.Walk walk = recorder.start();
+                List<Entity> entities = new ArrayList<>();
+                EntitySnapshotCache.forEachEntity(collider, snapshot, entities::add);
+                walk.end();
+                return entities;
+            }
+        });
+    }
+
+    /**
+     * Non-air blocks whose shape intersects the collider, read from chunk snapshots and delivered on the main thread.
+     */
+    public Mono<List<BlockSnapshot>> blocks(Collider collider) {
+        CollisionMetrics.Recorder recorder = CollisionMetrics.recorder(CollisionMetrics.Operation.AFFECT_BLOCK_SNAPSHOTS, collider);
+        return this.submit(new Query<List<BlockSnapshot>>() {
+            private Long2ObjectOpenHashMap<ChunkSnapshot> snapshots;
+
+            @Override
+            void capture() {
+                this.snapshots = ChunkSnapshotCache.capture(collider);
+            }
+
+            @Override
+            List<BlockSnapshot> compute() {
+                CollisionMetrics.Walk walk = recorder.start();
+                List<BlockSnapshot> blocks = new ArrayList<>();
+                ChunkSnapshotCache.forEachBlock(collider, snapshots, blocks::add);
+                walk.end();
+                return blocks;
+            }
+        });
+    }
+
+    public void setTickBudget(Duration tickBudget) {
+        if (tickBudget.isNegative()) {
+            throw new IllegalArgumentException("Tick budget must not be negative");
+        }
+        this.tickBudget = tickBudget;
+    }
+
+    /**
+     * Queries waiting for the next tick.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    private <R> Mono<R> submit(Query<R> query) {
+        if (shutdown) return Mono.error(new IllegalStateException("Collision pipeline is shut down"));
+        queue.add(query);
+        queueDepth.incrementAndGet();
+        // Shut down after the check above, the drain of shutdown may have run before this query was added
+        if (shutdown) this.drain();
+        return query.sink.asMono();
+    }
+
+    /**
+     * Stops the worker pool, queued queries fail with {@link IllegalStateException}. Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        pool.shutdown();
+        this.drain();
+    }
+
+    // Both shutdown and submit drain after the flag is visible, so every query added is failed by one of them
+    private void drain() {
+        Query<?> query;
+        while ((query = queue.poll()) != null) {
+            queueDepth.decrementAndGet();
+            query.sink.tryEmitError(new IllegalStateException("Collision pipeline is shut down"));
+        }
+    }
+
+    @Schedule(fixedRate = 1, initialDelay = 0)
+    public void tick() {
+        long start = System.nanoTime();
+        long budget = tickBudget.toNanos();
+        if (shutdown) return;
+        List<Query<?>> batch = new ArrayList<>();
+        int taken = 0;
+        Query<?> query;
+        while ((taken == 0 || System.nanoTime() - start < budget) && (query = queue.poll()) != null) {
+            taken++;
+            queueDepth.decrementAndGet();
+            try {
+                query.capture();
+                batch.add(query);
+            } catch (Throwable throwable) {
+                query.sink.tryEmitError(throwable);
+            }
+        }
+        if (batch.isEmpty()) return;
+        long captured = System.nanoTime();
+        this.lastBatchSize = batch.size();
+        this.lastCaptureNanos = captured - start;
+        Query<?>[] queries = batch.toArray(Query<?>[]::new);
+        pool.execute(() -> {
+            new Compute(queries, 0, queries.length).invoke();
+            this.lastComputeNanos = System.nanoTime() - captured;
+            Atom.syncScheduler().schedule(() -> {
+                for (Query<?> answered : queries) {
+                    answered.deliver();
+                }
+            });
+        });
+    }
+
+    private static abstract class Query<R> {
+        private final Sinks.One<R> sink = Sinks.one();
+        private R result;
+        private Throwable error;
+
+        // Main thread
+        abstract void capture();
+
+        // Fork join worker, must only read what capture took
+        abstract R compute();
+
+        private void run() {
+            try {
+                this.result = this.compute();
+            } catch (Throwable throwable) {
+                this.error = throwable;
+            }
+        }
+
+        private void deliver() {
+            if (error != null) {
+                sink.tryEmitError(error);
+            } else {
+                sink.tryEmitValue(result);
+            }
+        }
+    }
+
+    private static class Compute extends RecursiveAction {
+        private final Query<?>[] queries;
+        private final int from;
+        private final int to;
+
+        private Compute(Query<?>[] queries, int from, int to) {
+            this.queries = queries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    queries[i].run();
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Compute(queries, from, middle), new Compute(queries, middle, to));
+        }
+    }
+}
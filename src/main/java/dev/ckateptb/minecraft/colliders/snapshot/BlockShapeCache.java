@@ -0,0 +1,143 @@
+package dev.ckateptb.minecraft.colliders.snapshot;
+
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.math.VoxelIterator;
+import dev.ckateptb.minecraft.colliders.metrics.ColliderQueryEvent;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.EmptyBlockGetter;
+import net.minecraft.world.level.block.state.BlockBehaviour;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.craftbukkit.v1_19_R1.block.CraftBlock;
+import org.bukkit.craftbukkit.v1_19_R1.block.data.CraftBlockData;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Collision shapes of block states as flat lists of boxes relative to the block origin, six values per box:
+ * min x, y, z and max x, y, z. Shapes are read from the server once per block state and shared afterwards.
+ * <p>
+ * Air has no boxes. Blocks without collision, like grass or water, are a full block as in {@code Colliders.aabb(Block)}.
+ * Blocks whose shape is offset by their position, like bamboo, are not cached. Neither are blocks whose shape depends
+ * on the world, like shulker boxes, moving pistons or scaffolding: they are read from the world for a live block
+ * and from an empty world for block data, which has no block entity or neighbours to read.
+ * The returned arrays are shared and must not be modified.
+ */
+public class BlockShapeCache {
+    private static final double[] EMPTY = {};
+    private static final double[] FULL_BLOCK = {0, 0, 0, 1, 1, 1};
+    private static final AtomicReferenceArray<double[]> SHAPES =
+            new AtomicReferenceArray<>(net.minecraft.world.level.block.Block.BLOCK_STATE_REGISTRY.size());
+
+    public static double[] boxes(Block block) {
+        CraftBlock craftBlock = (CraftBlock) block;
+        BlockState state = craftBlock.getNMS();
+        if (state.getBlock().hasDynamicShape()) return read(state, craftBlock.getHandle(), craftBlock.getPosition());
+        return boxes(state, block.getX(), block.getY(), block.getZ());
+    }
+
+    public static double[] boxes(BlockData data, int x, int y, int z) {
+        return boxes(((CraftBlockData) data).getState(), x, y, z);
+    }
+
+    public static double[] boxes(BlockState state, int x, int y, int z) {
+        if (state.getBlock().getOffsetType() != BlockBehaviour.OffsetType.NONE || state.getBlock().hasDynamicShape()) {
+            return read(state, new BlockPos(x, y, z));
+        }
+        int id = net.minecraft.world.level.block.Block.getId(state);
+        if (id < 0 || id >= SHAPES.length()) return read(state, BlockPos.ZERO);
+        double[] boxes = SHAPES.get(id);
+        if (boxes == null) {
+            boxes = read(state, BlockPos.ZERO);
+            SHAPES.set(id, boxes);
+        }
+        return boxes;
+    }
+
+    /**
+     * Exact test of the collider against the boxes of the block at the given position.
+     */
+    public static boolean intersects(Collider collider, int x, int y, int z, double[] boxes) {
+        for (int i = 0; i < boxes.length; i += 6) {
+            if (collider.intersects(x + boxes[i], y + boxes[i + 1], z + boxes[i + 2],
+                    x + boxes[i + 3], y + boxes[i + 4], z + boxes[i + 5])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Blocks in the bounds of the collider whose shape intersects it, computed on subscription.
+     */
+    public static Flux<Block> blocks(Collider collider) {
+        World world = collider.getWorld();
+        CollisionMetrics.Recorder recorder = CollisionMetrics.recorder(CollisionMetrics.Operation.AFFECT_BLOCKS, collider);
+        return Flux.<Block>create(sink -> {
+            ColliderQueryEvent event = new ColliderQueryEvent();
+            event.begin();
+            CollisionMetrics.Walk walk = recorder.start();
+            long[] accepted = new long[1];
+            long scanned = VoxelIterator.forEachCandidate(collider, key -> {
+                Block block = world.getBlockAt(Block.getBlockKeyX(key), Block.getBlockKeyY(key), Block.getBlockKeyZ(key));
+                if (!intersects(collider, block)) return;
+                accepted[0]++;
+                walk.next(sink, block);
+            });
+            walk.end();
+            event.report("affectBlocks", collider, scanned, accepted[0], scanned);
+            sink.complete();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public static boolean intersects(Collider collider, Block block) {
+        if (!collider.getWorld().equals(block.getWorld())) return false;
+        return intersects(collider, block.getX(), block.getY(), block.getZ(), boxes(block));
+    }
+
+    /**
+     * Box enclosing all boxes, empty for air.
+     */
+    public static double[] bounds(double[] boxes) {
+        if (boxes.length <= 6) return boxes;
+        double[] bounds = {boxes[0], boxes[1], boxes[2], boxes[3], boxes[4], boxes[5]};
+        for (int i = 6; i < boxes.length; i += 6) {
+            for (int axis = 0; axis < 3; axis++) {
+                bounds[axis] = FastMath.min(bounds[axis], boxes[i + axis]);
+                bounds[axis + 3] = FastMath.max(bounds[axis + 3], boxes[i + axis + 3]);
+            }
+        }
+        return bounds;
+    }
+
+    private static double[] read(BlockState state, BlockPos pos) {
+        return read(state, EmptyBlockGetter.INSTANCE, pos);
+    }
+
+    private static double[] read(BlockState state, BlockGetter level, BlockPos pos) {
+        if (state.isAir()) return EMPTY;
+        VoxelShape shape = state.getCollisionShape(level, pos);
+        if (shape.isEmpty()) return FULL_BLOCK;
+        List<AABB> list = shape.toAabbs();
+        double[] boxes = new double[list.size() * 6];
+        for (int i = 0; i < list.size(); i++) {
+            AABB box = list.get(i);
+            int offset = i * 6;
+            boxes[offset] = box.minX;
+            boxes[offset + 1] = box.minY;
+            boxes[offset + 2] = box.minZ;
+            boxes[offset + 3] = box.maxX;
+            boxes[offset + 4] = box.maxY;
+            boxes[offset + 5] = box.maxZ;
+        }
+        return boxes;
+    }
+}
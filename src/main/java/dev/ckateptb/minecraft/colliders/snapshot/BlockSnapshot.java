@@ -0,0 +1,52 @@
+package dev.ckateptb.minecraft.colliders.snapshot;
+
+import dev.ckateptb.minecraft.colliders.geometry.AxisAlignedBoundingBoxCollider;
+import lombok.Getter;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Immutable view of a block read from a chunk snapshot, safe to pass between threads.
+ */
+@Getter
+public class BlockSnapshot {
+    private final World world;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final BlockData blockData;
+    private final AxisAlignedBoundingBoxCollider boundingBox;
+
+    public BlockSnapshot(World world, int x, int y, int z, BlockData blockData, AxisAlignedBoundingBoxCollider boundingBox) {
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.blockData = blockData;
+        this.boundingBox = boundingBox;
+    }
+
+    public Location getLocation() {
+        return new Location(world, x, y, z);
+    }
+
+    /**
+     * Live block at this position, its state may differ from the snapshot and must only be read on the main thread.
+     */
+    public Block getBlock() {
+        return world.getBlockAt(x, y, z);
+    }
+
+    @Override
+    public String toString() {
+        return "BlockSnapshot{" +
+                "world=" + world.getName() +
+                ", x=" + x +
+                ", y=" + y +
+                ", z=" + z +
+                ", blockData=" + blockData +
+                '}';
+    }
+}
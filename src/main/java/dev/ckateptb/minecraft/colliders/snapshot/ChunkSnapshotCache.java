@@ -0,0 +1,131 @@
+package dev.ckateptb.minecraft.colliders.snapshot;
+
+import dev.ckateptb.minecraft.atom.Atom;
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.geometry.AxisAlignedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.math.VoxelIterator;
+import dev.ckateptb.minecraft.colliders.metrics.ColliderQueryEvent;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Chunk snapshots taken during the current tick, shared by every collider that reads the same chunks.
+ * Snapshots are taken on the main thread once and read from any thread afterwards.
+ */
+public class ChunkSnapshotCache {
+    // Only touched on the main thread
+    private static final Map<UUID, Long2ObjectOpenHashMap<ChunkSnapshot>> SNAPSHOTS = new HashMap<>();
+    private static int tick = -1;
+
+    /**
+     * Snapshots of the loaded chunks in the given range, unloaded chunks are skipped rather than loaded.
+     */
+    public static Long2ObjectOpenHashMap<ChunkSnapshot> capture(World world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        if (!Bukkit.isPrimaryThread()) {
+            throw new IllegalStateException("Chunk snapshots must be captured on the main thread");
+        }
+        int currentTick = Bukkit.getCurrentTick();
+        if (currentTick != tick) {
+            SNAPSHOTS.clear();
+            tick = currentTick;
+        }
+        Long2ObjectOpenHashMap<ChunkSnapshot> cached = SNAPSHOTS.computeIfAbsent(world.getUID(), uuid -> new Long2ObjectOpenHashMap<>());
+        Long2ObjectOpenHashMap<ChunkSnapshot> snapshots = new Long2ObjectOpenHashMap<>();
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                long key = Chunk.getChunkKey(chunkX, chunkZ);
+                ChunkSnapshot snapshot = cached.get(key);
+                if (snapshot == null) {
+                    if (!world.isChunkLoaded(chunkX, chunkZ)) continue;
+                    snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+                    cached.put(key, snapshot);
+                }
+                snapshots.put(key, snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Snapshots of the loaded chunks the bounding box of the collider spans.
+     */
+    public static Long2ObjectOpenHashMap<ChunkSnapshot> capture(Collider collider) {
+        AxisAlignedBoundingBoxCollider bounds = collider.getBoundingBox();
+        ImmutableVector min = bounds.getMin();
+        ImmutableVector max = bounds.getMax();
+        return capture(collider.getWorld(),
+                (int) FastMath.ceil(min.getX() - 1) >> 4, (int) FastMath.ceil(min.getZ() - 1) >> 4,
+                (int) FastMath.floor(max.getX()) >> 4, (int) FastMath.floor(max.getZ()) >> 4);
+    }
+
+    /**
+     * Non-air blocks whose shape intersects the collider. Snapshots are captured on the main thread,
+     * in place when called on it, blocks are iterated and tested on a bounded elastic thread.
+     */
+    public static Flux<BlockSnapshot> blocks(Collider collider) {
+        CollisionMetrics.Recorder recorder = CollisionMetrics.recorder(CollisionMetrics.Operation.AFFECT_BLOCK_SNAPSHOTS, collider);
+        return Mono.defer(() -> {
+                    Mono<Long2ObjectOpenHashMap<ChunkSnapshot>> capture = Mono.fromCallable(() -> capture(collider));
+                    return Bukkit.isPrimaryThread() ? capture : capture.subscribeOn(Atom.syncScheduler());
+                })
+                .publishOn(Schedulers.boundedElastic())
+                .flatMapMany(snapshots -> Flux.create(sink -> {
+                    ColliderQueryEvent event = new ColliderQueryEvent();
+                    event.begin();
+                    CollisionMetrics.Walk walk = recorder.start();
+                    long[] accepted = new long[1];
+                    long scanned = forEachBlock(collider, snapshots, block -> {
+                        accepted[0]++;
+                        walk.next(sink, block);
+                    });
+                    walk.end();
+                    event.report("affectBlockSnapshots", collider, scanned, accepted[0], scanned);
+                    sink.complete();
+                }));
+    }
+
+    /**
+     * Reports the non-air blocks of the captured snapshots whose shape intersects the collider, on the calling thread.
+     * The same blocks are walked as for {@link BlockShapeCache#blocks(Collider)},
+     * see {@link VoxelIterator#forEachCandidate(Collider, java.util.function.LongConsumer)}.
+     *
+     * @return the number of blocks tested
+     */
+    public static long forEachBlock(Collider collider, Long2ObjectOpenHashMap<ChunkSnapshot> snapshots, Consumer<BlockSnapshot> consumer) {
+        World world = collider.getWorld();
+        int minHeight = world.getMinHeight();
+        int maxHeight = world.getMaxHeight();
+        return VoxelIterator.forEachCandidate(collider, key -> {
+            int x = Block.getBlockKeyX(key);
+            int y = Block.getBlockKeyY(key);
+            int z = Block.getBlockKeyZ(key);
+            if (y < minHeight || y >= maxHeight) return;
+            ChunkSnapshot snapshot = snapshots.get(Chunk.getChunkKey(x >> 4, z >> 4));
+            if (snapshot == null) return;
+            BlockData data = snapshot.getBlockData(x & 15, y, z & 15);
+            if (data.getMaterial().isAir()) return;
+            double[] boxes = BlockShapeCache.boxes(data, x, y, z);
+            if (!BlockShapeCache.intersects(collider, x, y, z, boxes)) return;
+            double[] box = BlockShapeCache.bounds(boxes);
+            consumer.accept(new BlockSnapshot(world, x, y, z, data, new AxisAlignedBoundingBoxCollider(world,
+                    new ImmutableVector(x + box[0], y + box[1], z + box[2]),
+                    new ImmutableVector(x + box[3], y + box[4], z + box[5]))));
+        });
+    }
+}
@@ -0,0 +1,171 @@
+package dev.ckateptb.minecraft.colliders.snapshot;
+
+import dev.ckateptb.minecraft.colliders.index.SpatialHashColliderIndex;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import lombok.Getter;
+import org.apache.commons.math3.util.FastMath;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.util.BoundingBox;
+
+import java.util.Collection;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Entities of one world captured during one tick: ids, types and bounding boxes in primitive arrays,
+ * bucketed into a uniform grid of 8 block cells. Immutable once captured, so it is read from any thread.
+ */
+public class EntitySnapshot {
+    private static final int CELL_SHIFT = 3;
+
+    @Getter
+    private final World world;
+    @Getter
+    private final int tick;
+    private final Entity[] entities;
+    private final int[] ids;
+    private final EntityType[] types;
+    // Six values per entity: minX, minY, minZ, maxX, maxY, maxZ
+    private final double[] bounds;
+    // Offset of each cell in cellEntries, where the entity count of the cell is followed by entity indexes
+    private final Long2IntOpenHashMap cellOffsets = new Long2IntOpenHashMap();
+    private final int[] cellEntries;
+
+    public EntitySnapshot(World world, int tick, Collection<? extends Entity> entities) {
+        this.world = world;
+        this.tick = tick;
+        int size = entities.size();
+        this.entities = new Entity[size];
+        this.ids = new int[size];
+        this.types = new EntityType[size];
+        this.bounds = new double[size * 6];
+        int index = 0;
+        for (Entity entity : entities) {
+            BoundingBox box = entity.getBoundingBox();
+            this.entities[index] = entity;
+            this.ids[index] = entity.getEntityId();
+            this.types[index] = entity.getType();
+            int offset = index * 6;
+            bounds[offset] = box.getMinX();
+            bounds[offset + 1] = box.getMinY();
+            bounds[offset + 2] = box.getMinZ();
+            bounds[offset + 3] = box.getMaxX();
+            bounds[offset + 4] = box.getMaxY();
+            bounds[offset + 5] = box.getMaxZ();
+            index++;
+        }
+        // Count entities per cell, then lay cells out one after another and fill them
+        Long2IntOpenHashMap counts = new Long2IntOpenHashMap();
+        LongArrayList keys = new LongArrayList();
+        for (int i = 0; i < size; i++) {
+            this.forEachCell(i, key -> {
+                if (counts.addTo(key, 1) == 0) keys.add(key);
+            });
+        }
+        this.cellOffsets.defaultReturnValue(-1);
+        int length = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            long key = keys.getLong(i);
+            cellOffsets.put(key, length);
+            length += 1 + counts.get(key);
+        }
+        this.cellEntries = new int[length];
+        for (int i = 0; i < size; i++) {
+            int entity = i;
+            this.forEachCell(i, key -> {
+                int offset = cellOffsets.get(key);
+                cellEntries[offset + 1 + cellEntries[offset]++] = entity;
+            });
+        }
+    }
+
+    public int size() {
+        return entities.length;
+    }
+
+    public Entity getEntity(int index) {
+        return entities[index];
+    }
+
+    public int getEntityId(int index) {
+        return ids[index];
+    }
+
+    public EntityType getType(int index) {
+        return types[index];
+    }
+
+    public double getMinX(int index) {
+        return bounds[index * 6];
+    }
+
+    public double getMinY(int index) {
+        return bounds[index * 6 + 1];
+    }
+
+    public double getMinZ(int index) {
+        return bounds[index * 6 + 2];
+    }
+
+    public double getMaxX(int index) {
+        return bounds[index * 6 + 3];
+    }
+
+    public double getMaxY(int index) {
+        return bounds[index * 6 + 4];
+    }
+
+    public double getMaxZ(int index) {
+        return bounds[index * 6 + 5];
+    }
+
+    /**
+     * Reports the index of every entity whose bounding box overlaps the given bounds, each entity once.
+     */
+    public void query(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, IntConsumer consumer) {
+        int minCellX = toCell(minX), minCellY = toCell(minY), minCellZ = toCell(minZ);
+        int maxCellX = toCell(maxX), maxCellY = toCell(maxY), maxCellZ = toCell(maxZ);
+        for (int x = minCellX; x <= maxCellX; x++) {
+            for (int y = minCellY; y <= maxCellY; y++) {
+                for (int z = minCellZ; z <= maxCellZ; z++) {
+                    int offset = cellOffsets.get(SpatialHashColliderIndex.cellKey(x, y, z));
+                    if (offset == -1) continue;
+                    int end = offset + 1 + cellEntries[offset];
+                    for (int i = offset + 1; i < end; i++) {
+                        int entity = cellEntries[i];
+                        int boundsOffset = entity * 6;
+                        // An entity spanning several cells is only reported from the first cell it shares with the query
+                        if (x != FastMath.max(toCell(bounds[boundsOffset]), minCellX)
+                                || y != FastMath.max(toCell(bounds[boundsOffset + 1]), minCellY)
+                                || z != FastMath.max(toCell(bounds[boundsOffset + 2]), minCellZ)) continue;
+                        if (bounds[boundsOffset] <= maxX && bounds[boundsOffset + 3] >= minX
+                                && bounds[boundsOffset + 1] <= maxY && bounds[boundsOffset + 4] >= minY
+                                && bounds[boundsOffset + 2] <= maxZ && bounds[boundsOffset + 5] >= minZ) {
+                            consumer.accept(entity);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void forEachCell(int entity, LongConsumer consumer) {
+        int offset = entity * 6;
+        int minCellX = toCell(bounds[offset]), minCellY = toCell(bounds[offset + 1]), minCellZ = toCell(bounds[offset + 2]);
+        int maxCellX = toCell(bounds[offset + 3]), maxCellY = toCell(bounds[offset + 4]), maxCellZ = toCell(bounds[offset + 5]);
+        for (int x = minCellX; x <= maxCellX; x++) {
+            for (int y = minCellY; y <= maxCellY; y++) {
+                for (int z = minCellZ; z <= maxCellZ; z++) {
+                    consumer.accept(SpatialHashColliderIndex.cellKey(x, y, z));
+                }
+            }
+        }
+    }
+
+    private static int toCell(double value) {
+        return (int) FastMath.floor(value) >> CELL_SHIFT;
+    }
+}
@@ -0,0 +1,111 @@
+package dev.ckateptb.minecraft.colliders.snapshot;
+
+import dev.ckateptb.minecraft.atom.Atom;
+import dev.ckateptb.minecraft.colliders.Collider;
+import dev.ckateptb.minecraft.colliders.geometry.AxisAlignedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.geometry.CombinedBoundingBoxCollider;
+import dev.ckateptb.minecraft.colliders.math.ImmutableVector;
+import dev.ckateptb.minecraft.colliders.metrics.ColliderQueryEvent;
+import dev.ckateptb.minecraft.colliders.metrics.CollisionMetrics;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * One {@link EntitySnapshot} per world and tick. The first query of a tick captures it on the main thread,
+ * every other query of that tick is answered from it without leaving its own thread.
+ */
+public class EntitySnapshotCache {
+    private static final Map<UUID, EntitySnapshot> SNAPSHOTS = new ConcurrentHashMap<>();
+
+    public static EntitySnapshot capture(World world) {
+        if (!Bukkit.isPrimaryThread()) {
+            throw new IllegalStateException("Entity snapshots must be captured on the main thread");
+        }
+        int tick = Bukkit.getCurrentTick();
+        EntitySnapshot snapshot = SNAPSHOTS.get(world.getUID());
+        if (snapshot != null && snapshot.getTick() == tick) return snapshot;
+        snapshot = new EntitySnapshot(world, tick, world.getEntities());
+        SNAPSHOTS.put(world.getUID(), snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Snapshot of the current tick, captured on the main thread if there is none yet.
+     * Never blocks, when called on the main thread the snapshot is captured in place.
+     */
+    public static Mono<EntitySnapshot> snapshot(World world) {
+        return Mono.defer(() -> {
+            EntitySnapshot snapshot = SNAPSHOTS.get(world.getUID());
+            if (snapshot != null && snapshot.getTick() == Bukkit.getCurrentTick()) return Mono.just(snapshot);
+            Mono<EntitySnapshot> capture = Mono.fromCallable(() -> capture(world));
+            return Bukkit.isPrimaryThread() ? capture : capture.subscribeOn(Atom.syncScheduler());
+        });
+    }
+
+    /**
+     * Entities whose bounding box intersects the collider, tested on a bounded elastic thread.
+     */
+    public static Flux<Entity> entities(Collider collider) {
+        CollisionMetrics.Recorder recorder = CollisionMetrics.recorder(CollisionMetrics.Operation.AFFECT_ENTITIES, collider);
+        return snapshot(collider.getWorld())
+                .publishOn(Schedulers.boundedElastic())
+                .flatMapMany(snapshot -> Flux.create(sink -> {
+                    ColliderQueryEvent event = new ColliderQueryEvent();
+                    event.begin();
+                    CollisionMetrics.Walk walk = recorder.start();
+                    long[] accepted = new long[1];
+                    int candidates = forEachEntity(collider, snapshot, entity -> {
+                        accepted[0]++;
+                        walk.next(sink, entity);
+                    });
+                    walk.end();
+                    event.report("affectEntities", collider, candidates, accepted[0], 0);
+                    sink.complete();
+                }));
+    }
+
+    /**
+     * Reports the entities of the snapshot whose bounding box intersects the collider, on the calling thread.
+     *
+     * @return the number of entities tested
+     */
+    public static int forEachEntity(Collider collider, EntitySnapshot snapshot, Consumer<Entity> consumer) {
+        if (collider instanceof CombinedBoundingBoxCollider combined && combined.isSpread()) {
+            // Children of a union that are apart are queried one by one, an entity two children share is reported once
+            IntOpenHashSet seen = new IntOpenHashSet();
+            int candidates = 0;
+            for (int i = 0; i < combined.getColliderCount(); i++) {
+                candidates += forEachEntity(combined.getCollider(i), snapshot, entity -> {
+                    if (seen.add(entity.getEntityId())) consumer.accept(entity);
+                });
+            }
+            return candidates;
+        }
+        AxisAlignedBoundingBoxCollider bounds = collider.getBoundingBox();
+        ImmutableVector min = bounds.getMin();
+        ImmutableVector max = bounds.getMax();
+        int[] candidates = new int[1];
+        snapshot.query(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ(), index -> {
+            candidates[0]++;
+            if (collider.intersects(snapshot.getMinX(index), snapshot.getMinY(index), snapshot.getMinZ(index),
+                    snapshot.getMaxX(index), snapshot.getMaxY(index), snapshot.getMaxZ(index))) {
+                consumer.accept(snapshot.getEntity(index));
+            }
+        });
+        return candidates[0];
+    }
+
+    public static void unload(World world) {
+        SNAPSHOTS.remove(world.getUID());
+    }
+}